@@ -0,0 +1,452 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  Precomputed ancestor labels of a rooted DAG. For every
+  *  vertex, stores the list of all of its ancestors (including itself)
+  *  sorted by vertex ID, together with the length of the shortest path to
+  *  each of them. A shortest common ancestor query then becomes a merge-join
+  *  of two sorted label lists instead of a graph search.
+  * 
+  *****************************************************************************/
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.In;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class AncestorIndex {
+    
+    // used to initialize current minimum distance
+    private static final int INFINITY = Integer.MAX_VALUE;
+    
+    // number of vertices
+    private final int numOfV;
+    // vertex-indexed arrays of the position and length of each label list
+    private final int[] labelStart;
+    private final int[] labelLength;
+    // label entries: ancestor IDs and the distance to them, each vertex's
+    // entries stored contiguously and sorted by ancestor ID
+    private final int[] labelAnc;
+    private final int[] labelDist;
+    // time taken to build the index, or to update it from the index
+    // before, in milliseconds
+    private final long buildMillis;
+    
+    // scratch arrays for subset queries, each borrowed by one query at a time
+    private final ScratchPool<Scratch> scratch;
+    
+    // vertex-indexed best distance from the first subset, valid only where
+    // the stamp equals the current epoch
+    private static class Scratch {
+        private final int[] distTo;
+        private final int[] marked;
+        private int epoch;
+        
+        private Scratch(int numOfV) {
+            distTo = new int[numOfV];
+            marked = new int[numOfV];
+        }
+        
+        // starts a new query, clearing the stamps once on overflow
+        private void reset() {
+            epoch++;
+            if (epoch == INFINITY) {
+                Arrays.fill(marked, 0);
+                epoch = 1;
+            }
+        }
+    }
+    
+    // constructor builds the labels of every vertex of a rooted DAG
+    public AncestorIndex(CompactDigraph G) {
+        this(G, new TopologicalOrder(G));
+    }
+    
+    // constructor builds the labels of every vertex of a rooted DAG, given
+    // its topological order
+    public AncestorIndex(CompactDigraph G, TopologicalOrder topological) {
+        if (G == null || topological == null) throw new NullPointerException();
+        if (topological.V() != G.V()) throw new IllegalArgumentException();
+        
+        long start = System.nanoTime();
+        
+        numOfV = G.V();
+        labelStart = new int[numOfV];
+        labelLength = new int[numOfV];
+        
+        // label entries, grown by resizing as vertices are labeled
+        Labeler labeler = new Labeler(new int[Math.max(16, 4 * numOfV)],
+                                      new int[Math.max(16, 4 * numOfV)], 0);
+        
+        // labels vertices in reverse topological order, from the root down,
+        // so the labels of all hypernyms of a vertex exist before its own
+        for (int i = numOfV - 1; i >= 0; i--) {
+            labeler.label(G, topological.vertex(i), labelStart, labelLength);
+        }
+        
+        labelAnc = Arrays.copyOf(labeler.anc, labeler.size);
+        labelDist = Arrays.copyOf(labeler.dist, labeler.size);
+        buildMillis = (System.nanoTime() - start) / 1000000;
+        
+        scratch = new ScratchPool<Scratch>(() -> new Scratch(numOfV));
+    }
+    
+    // appends the labels of vertices to growing arrays of label entries
+    private static class Labeler {
+        private int[] anc;
+        private int[] dist;
+        private int size;
+        
+        // buffer for merging the labels of the hypernyms of one vertex
+        private int[] mergeAnc = new int[16];
+        private int[] mergeDist = new int[16];
+        
+        private Labeler(int[] anc, int[] dist, int size) {
+            this.anc = anc;
+            this.dist = dist;
+            this.size = size;
+        }
+        
+        // appends the label of v, merged from the labels of all hypernyms of
+        // v plus v itself, which must already be in the arrays
+        private void label(CompactDigraph G, int v, int[] labelStart,
+                           int[] labelLength) {
+            int mergeSize = 1;
+            mergeAnc[0] = v;
+            mergeDist[0] = 0;
+            for (int e = G.adjStart(v); e < G.adjEnd(v); e++) {
+                int p = G.target(e);
+                int needed = mergeSize + labelLength[p];
+                if (needed > mergeAnc.length) {
+                    int capacity = Math.max(needed, 2 * mergeAnc.length);
+                    mergeAnc = Arrays.copyOf(mergeAnc, capacity);
+                    mergeDist = Arrays.copyOf(mergeDist, capacity);
+                }
+                mergeSize = merge(mergeAnc, mergeDist, mergeSize,
+                                  anc, dist, labelStart[p], labelLength[p]);
+            }
+            
+            // appends the merged label to the entries
+            if (size + mergeSize > anc.length) {
+                int capacity = Math.max(size + mergeSize, 2 * anc.length);
+                anc = Arrays.copyOf(anc, capacity);
+                dist = Arrays.copyOf(dist, capacity);
+            }
+            System.arraycopy(mergeAnc, 0, anc, size, mergeSize);
+            System.arraycopy(mergeDist, 0, dist, size, mergeSize);
+            labelStart[v] = size;
+            labelLength[v] = mergeSize;
+            size += mergeSize;
+        }
+    }
+    
+    // index of G, which must be the graph of this index with new vertices
+    // and edges added, and the first numOfE entries of from the sources of
+    // the new edges. Only the labels of new vertices and of vertices that
+    // can reach a new edge are rebuilt, and appended after a copy of the
+    // existing entries; once the entries left behind by relabeled vertices
+    // outnumber the live ones, the whole index is rebuilt instead. This
+    // index is not changed
+    public AncestorIndex withEdges(CompactDigraph G, TopologicalOrder topological,
+                                   int[] from, int numOfE) {
+        if (G == null || topological == null || from == null) {
+            throw new NullPointerException();
+        }
+        int newV = G.V();
+        if (topological.V() != newV || newV < numOfV) {
+            throw new IllegalArgumentException();
+        }
+        
+        long start = System.nanoTime();
+        
+        // a vertex is stale if it is new, gained a hypernym, or has a stale
+        // hypernym; hypernyms come first from the root down
+        boolean[] stale = new boolean[newV];
+        for (int v = numOfV; v < newV; v++) {
+            stale[v] = true;
+        }
+        for (int i = 0; i < numOfE; i++) {
+            stale[from[i]] = true;
+        }
+        // entries left behind by earlier updates count as garbage too
+        long garbage = labelAnc.length;
+        for (int v = 0; v < numOfV; v++) {
+            garbage -= labelLength[v];
+        }
+        int[] order = new int[newV];
+        int numOfStale = 0;
+        for (int i = newV - 1; i >= 0; i--) {
+            int v = topological.vertex(i);
+            for (int e = G.adjStart(v); !stale[v] && e < G.adjEnd(v); e++) {
+                if (stale[G.target(e)]) stale[v] = true;
+            }
+            if (stale[v]) {
+                order[numOfStale++] = v;
+                if (v < numOfV) garbage += labelLength[v];
+            }
+        }
+        if (2 * garbage > labelAnc.length) return new AncestorIndex(G, topological);
+        
+        int[] newStart = Arrays.copyOf(labelStart, newV);
+        int[] newLength = Arrays.copyOf(labelLength, newV);
+        Labeler labeler = new Labeler(Arrays.copyOf(labelAnc, labelAnc.length + 16),
+                                      Arrays.copyOf(labelDist, labelDist.length + 16),
+                                      labelAnc.length);
+        for (int i = 0; i < numOfStale; i++) {
+            labeler.label(G, order[i], newStart, newLength);
+        }
+        return new AncestorIndex(newStart, newLength,
+                                 Arrays.copyOf(labeler.anc, labeler.size),
+                                 Arrays.copyOf(labeler.dist, labeler.size),
+                                 (System.nanoTime() - start) / 1000000);
+    }
+    
+    // constructor takes the arrays of an already built index, as read back
+    // from a snapshot
+    private AncestorIndex(int[] labelStart, int[] labelLength,
+                          int[] labelAnc, int[] labelDist, long buildMillis) {
+        this.numOfV = labelStart.length;
+        this.labelStart = labelStart;
+        this.labelLength = labelLength;
+        this.labelAnc = labelAnc;
+        this.labelDist = labelDist;
+        this.buildMillis = buildMillis;
+        scratch = new ScratchPool<Scratch>(() -> new Scratch(numOfV));
+    }
+    
+    // merges the label anc/dist[from, from + length), with every distance
+    // one longer, into the sorted buffer target[0, size) keeping the smaller
+    // distance for shared ancestors. The buffer must have room for both.
+    // Returns the new size of the buffer.
+    private static int merge(int[] targetAnc, int[] targetDist, int size,
+                             int[] anc, int[] dist, int from, int length) {
+        
+        // merges from the back so the buffer can be filled in place
+        int i = size - 1;
+        int j = from + length - 1;
+        int k = size + length - 1;
+        while (j >= from) {
+            if (i >= 0 && targetAnc[i] > anc[j]) {
+                targetAnc[k] = targetAnc[i];
+                targetDist[k--] = targetDist[i--];
+            } else if (i >= 0 && targetAnc[i] == anc[j]) {
+                targetAnc[k] = targetAnc[i];
+                targetDist[k--] = Math.min(targetDist[i--], dist[j--] + 1);
+            } else {
+                targetAnc[k] = anc[j];
+                targetDist[k--] = dist[j--] + 1;
+            }
+        }
+        while (i >= 0) {
+            targetAnc[k] = targetAnc[i];
+            targetDist[k--] = targetDist[i--];
+        }
+        
+        // closes the gap left by shared ancestors
+        int gap = k + 1;
+        if (gap > 0) {
+            int newSize = size + length - gap;
+            System.arraycopy(targetAnc, gap, targetAnc, 0, newSize);
+            System.arraycopy(targetDist, gap, targetDist, 0, newSize);
+            return newSize;
+        }
+        return size + length;
+    }
+    
+    // shortest common ancestor of v and w, as a result packed by
+    // ShortestCommonAncestor.result()
+    public long query(int v, int w) {
+        int minDist = INFINITY;
+        int ancestor = -1;
+        
+        // walks both sorted label lists in step, looking for shared ancestors
+        int i = labelStart[v];
+        int iEnd = i + labelLength[v];
+        int j = labelStart[w];
+        int jEnd = j + labelLength[w];
+        while (i < iEnd && j < jEnd) {
+            int a = labelAnc[i];
+            int b = labelAnc[j];
+            if (a < b) i++;
+            else if (a > b) j++;
+            else {
+                int dist = labelDist[i] + labelDist[j];
+                if (dist < minDist) {
+                    minDist = dist;
+                    ancestor = a;
+                }
+                i++;
+                j++;
+            }
+        }
+        
+        return ShortestCommonAncestor.result(minDist, ancestor);
+    }
+    
+    // shortest common ancestor of vertex subsets A and B, as a packed result
+    public long query(Iterable<Integer> subsetA, Iterable<Integer> subsetB) {
+        Scratch s = scratch.borrow();
+        try {
+            s.reset();
+            
+            // keeps the best distance from subset A to each of its ancestors
+            for (int v : subsetA) {
+                for (int i = labelStart[v]; i < labelStart[v] + labelLength[v]; i++) {
+                    int a = labelAnc[i];
+                    if (s.marked[a] != s.epoch || labelDist[i] < s.distTo[a]) {
+                        s.marked[a] = s.epoch;
+                        s.distTo[a] = labelDist[i];
+                    }
+                }
+            }
+            
+            int minDist = INFINITY;
+            int ancestor = -1;
+            
+            // checks every ancestor of subset B against the distances from A
+            for (int w : subsetB) {
+                for (int i = labelStart[w]; i < labelStart[w] + labelLength[w]; i++) {
+                    int a = labelAnc[i];
+                    if (s.marked[a] == s.epoch &&
+                            s.distTo[a] + labelDist[i] < minDist) {
+                        minDist = s.distTo[a] + labelDist[i];
+                        ancestor = a;
+                    }
+                }
+            }
+            
+            return ShortestCommonAncestor.result(minDist, ancestor);
+        } finally {
+            scratch.release(s);
+        }
+    }
+    
+    // shortest common ancestor of vertex arrays A and B, whose vertices must
+    // all be valid, as a packed result
+    public long query(int[] subsetA, int[] subsetB) {
+        // a single pair needs no scratch space
+        if (subsetA.length == 1 && subsetB.length == 1) {
+            return query(subsetA[0], subsetB[0]);
+        }
+        
+        Scratch s = scratch.borrow();
+        try {
+            s.reset();
+            
+            for (int v : subsetA) {
+                for (int i = labelStart[v]; i < labelStart[v] + labelLength[v]; i++) {
+                    int a = labelAnc[i];
+                    if (s.marked[a] != s.epoch || labelDist[i] < s.distTo[a]) {
+                        s.marked[a] = s.epoch;
+                        s.distTo[a] = labelDist[i];
+                    }
+                }
+            }
+            
+            int minDist = INFINITY;
+            int ancestor = -1;
+            
+            for (int w : subsetB) {
+                for (int i = labelStart[w]; i < labelStart[w] + labelLength[w]; i++) {
+                    int a = labelAnc[i];
+                    if (s.marked[a] == s.epoch &&
+                            s.distTo[a] + labelDist[i] < minDist) {
+                        minDist = s.distTo[a] + labelDist[i];
+                        ancestor = a;
+                    }
+                }
+            }
+            
+            return ShortestCommonAncestor.result(minDist, ancestor);
+        } finally {
+            scratch.release(s);
+        }
+    }
+    
+    // writes the label arrays and build time
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(numOfV);
+        out.writeInt(labelAnc.length);
+        out.writeLong(buildMillis);
+        for (int v = 0; v < numOfV; v++) {
+            out.writeInt(labelStart[v]);
+            out.writeInt(labelLength[v]);
+        }
+        for (int i = 0; i < labelAnc.length; i++) {
+            out.writeInt(labelAnc[i]);
+            out.writeInt(labelDist[i]);
+        }
+    }
+    
+    // reads an index written by writeTo, advancing the buffer past it
+    public static AncestorIndex readFrom(ByteBuffer in) {
+        int numOfV = in.getInt();
+        int size = in.getInt();
+        long buildMillis = in.getLong();
+        // the counts are checked against the bytes left before anything is
+        // allocated, so a corrupt count cannot exhaust the heap
+        if (numOfV < 0 || size < 0 || 8L * ((long) numOfV + size) > in.remaining()) {
+            throw new IllegalArgumentException();
+        }
+        
+        int[] labelStart = new int[numOfV];
+        int[] labelLength = new int[numOfV];
+        for (int v = 0; v < numOfV; v++) {
+            labelStart[v] = in.getInt();
+            labelLength[v] = in.getInt();
+            if (labelStart[v] < 0 || labelLength[v] < 0
+                    || (long) labelStart[v] + labelLength[v] > size) {
+                throw new IllegalArgumentException();
+            }
+        }
+        int[] labelAnc = new int[size];
+        int[] labelDist = new int[size];
+        for (int i = 0; i < size; i++) {
+            labelAnc[i] = in.getInt();
+            labelDist[i] = in.getInt();
+            if (labelAnc[i] < 0 || labelAnc[i] >= numOfV) {
+                throw new IllegalArgumentException();
+            }
+        }
+        return new AncestorIndex(labelStart, labelLength, labelAnc, labelDist,
+                                 buildMillis);
+    }
+    
+    // number of vertices
+    public int V() {
+        return numOfV;
+    }
+    
+    // total number of label entries, including any left behind by updates
+    public int size() {
+        return labelAnc.length;
+    }
+    
+    // approximate number of bytes used by the arrays of this index
+    public long memoryUsage() {
+        return 4L * (labelStart.length + labelLength.length
+                         + labelAnc.length + labelDist.length);
+    }
+    
+    // time taken to build or update the index, in milliseconds
+    public long buildTime() {
+        return buildMillis;
+    }
+    
+    // do unit testing of this class
+    public static void main(String[] args) {
+        In in = new In(args[0]);
+        Digraph G = new Digraph(in);
+        AncestorIndex index = new AncestorIndex(new CompactDigraph(G));
+        
+        System.out.println("built in " + index.buildTime() + " ms, "
+                               + index.size() + " entries, "
+                               + index.memoryUsage() + " bytes");
+        
+        long result = index.query(6, 7);
+        System.out.println("ancestor = (3) "
+                               + ShortestCommonAncestor.resultAnc(result));
+    }
+}
@@ -0,0 +1,95 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  Immutable result of a shortest common ancestor query:
+  *  the length of the shortest ancestral path and its ancestor, found by a
+  *  single search. Optionally holds the vertices of the path itself, and,
+  *  for WordNet queries, the synset string of the ancestor. A query whose
+  *  search was stopped by its limit holds an upper bound instead.
+  * 
+  *****************************************************************************/
+
+public class AncestorResult {
+    
+    // length of the shortest ancestral path
+    private final int distance;
+    // shortest common ancestor
+    private final int ancestor;
+    // vertices of the path from the first source to the second, or null
+    private final int[] path;
+    // synset string of the ancestor, or null
+    private final String synset;
+    // is this the shortest ancestral path, or only an upper bound found by
+    // a search its limit stopped?
+    private final boolean exact;
+    
+    // constructor for a result without path or synset
+    public AncestorResult(int distance, int ancestor) {
+        this(distance, ancestor, null, null);
+    }
+    
+    // constructor for an exact result, path and synset may be null
+    public AncestorResult(int distance, int ancestor, int[] path, String synset) {
+        this(distance, ancestor, path, synset, true);
+    }
+    
+    // constructor takes every field, path and synset may be null
+    public AncestorResult(int distance, int ancestor, int[] path, String synset,
+                          boolean exact) {
+        this.distance = distance;
+        this.ancestor = ancestor;
+        this.path = path;
+        this.synset = synset;
+        this.exact = exact;
+    }
+    
+    // length of the shortest ancestral path
+    public int distance() {
+        return distance;
+    }
+    
+    // shortest common ancestor
+    public int ancestor() {
+        return ancestor;
+    }
+    
+    // was the path requested?
+    public boolean hasPath() {
+        return path != null;
+    }
+    
+    // vertices of the shortest ancestral path, from a vertex of the first
+    // subset up to the ancestor and down to a vertex of the second subset;
+    // throws IllegalStateException if the path was not requested
+    public int[] path() {
+        if (path == null) throw new IllegalStateException("path not requested");
+        return path.clone();
+    }
+    
+    // synset string of the ancestor, or null if not a WordNet result
+    public String synset() {
+        return synset;
+    }
+    
+    // is the length that of a shortest ancestral path? If not, the search
+    // was stopped by its limit, the length is an upper bound and the
+    // ancestor a common ancestor at that length
+    public boolean isExact() {
+        return exact;
+    }
+    
+    // string representation of the result
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        s.append("length ").append(exact ? "= " : "<= ").append(distance);
+        s.append(", ancestor = ").append(ancestor);
+        if (synset != null) s.append(" (").append(synset).append(")");
+        if (path != null) {
+            s.append(", path =");
+            for (int v : path) {
+                s.append(" ").append(v);
+            }
+        }
+        return s.toString();
+    }
+}
@@ -0,0 +1,366 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  Searches for the shortest common ancestor of up to 64
+  *  queries at once. Every vertex holds one 64-bit word per side in which
+  *  bit i says whether query i has reached it, and both sides of all
+  *  queries advance one BFS level at a time: a frontier vertex hands the
+  *  bits of every query that reached it at this level to its hypernyms
+  *  with a few word operations, so an edge near the root, which nearly
+  *  every query crosses, is scanned once per batch instead of once per
+  *  query. The distance at which each query reached a vertex is stored
+  *  bit-sliced, as one word per bit of the distance, so the distance of
+  *  one query can be read back when both of its sides meet. Like
+  *  DeluxeBFS, an object is a reusable workspace, used by one thread at a
+  *  time.
+  * 
+  *****************************************************************************/
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import java.util.Arrays;
+
+public class BitParallelBFS {
+    
+    // number of queries searched at once, one per bit of a word
+    public static final int LANES = 64;
+    
+    // used to initialize current minimum distance
+    private static final int INFINITY = Integer.MAX_VALUE;
+    
+    // digraph searched by this workspace
+    private final CompactDigraph G;
+    
+    // vertex-indexed shortest and longest path lengths to the root, used to
+    // prune the search as DeluxeBFS does
+    private final int[] shortestDepth;
+    private final int[] longestDepth;
+    
+    // longest path to the root in the graph, which bounds every distance
+    private final int longest;
+    
+    // bit i of doneAt[m] is set once query i finds an ancestor at distance
+    // m, after which levels from m on cannot improve on it
+    private final long[] doneAt;
+    
+    // blocks of words of the vertices reached, stride words per block: for
+    // each side in turn, the queries that have reached the vertex, the
+    // queries that reached it at the current and at the next level, and the
+    // distance planes, where bit i of plane k is bit k of the distance at
+    // which query i reached the vertex. A batch reaches only a small part
+    // of the graph, so blocks are handed out in the order vertices are
+    // reached and the words stay in cache, where a block for every vertex
+    // would not
+    private long[] words;
+    private final int stride;
+    // number of distance planes
+    private final int planes;
+    
+    // vertex-indexed block of each reached vertex, -1 for the others
+    private final int[] block;
+    // vertex of each block handed out, so blocks can be cleared afterwards
+    private int[] blockVertex;
+    private int blocks;
+    
+    // the two sides of the search
+    private final Side v;
+    private final Side w;
+    
+    // best distance and ancestor found so far by each query
+    private final int[] minDist = new int[LANES];
+    private final int[] ancestor = new int[LANES];
+    
+    // one side of the search: where its words start in each vertex's
+    // block, and its current and next level
+    private static class Side {
+        // offset of the side's seen word in a vertex's block; the masks of
+        // the current and next level follow at base + current and
+        // base + next, and the distance planes at base + 3
+        private final int base;
+        private int current = 1;
+        private int next = 2;
+        // vertices of the current and next level
+        private int[] frontier;
+        private int[] nextFrontier;
+        private int frontierSize;
+        private int nextSize;
+        // shortest path to the root from the sources of each query
+        private final int[] floor = new int[LANES];
+        // bit i of pruned[longest + 1 + m - d] is set when query i need not
+        // expand vertices at distance d whose longest path to the root is
+        // m; see prune()
+        private final long[] pruned;
+        // whether pruned is out of date
+        private boolean stale;
+        
+        private Side(int numOfV, int base, int longest) {
+            this.base = base;
+            pruned = new long[2 * longest + 2];
+            frontier = new int[numOfV];
+            nextFrontier = new int[numOfV];
+            Arrays.fill(floor, INFINITY);
+        }
+        
+        // makes the next level the current one
+        private void advance() {
+            int swapMask = current;
+            current = next;
+            next = swapMask;
+            int[] swap = frontier;
+            frontier = nextFrontier;
+            nextFrontier = swap;
+            frontierSize = nextSize;
+            nextSize = 0;
+        }
+        
+        // forgets the levels and sources
+        private void clear() {
+            frontierSize = 0;
+            nextSize = 0;
+            Arrays.fill(floor, INFINITY);
+            Arrays.fill(pruned, 0);
+        }
+    }
+    
+    // constructor creates an empty workspace for searches in a rooted DAG,
+    // given its topological order
+    public BitParallelBFS(CompactDigraph G, TopologicalOrder topological) {
+        if (G == null || topological == null) throw new NullPointerException();
+        if (topological.V() != G.V()) throw new IllegalArgumentException();
+        this.G = G;
+        shortestDepth = topological.depths();
+        longestDepth = topological.maxDepths();
+        
+        // no distance in the search is longer than the longest path to the
+        // root, which decides how many bits a distance needs
+        int maxDepth = 0;
+        for (int x = 0; x < G.V(); x++) {
+            maxDepth = Math.max(maxDepth, longestDepth[x]);
+        }
+        longest = maxDepth;
+        doneAt = new long[2 * longest + 2];
+        planes = Math.max(1, 32 - Integer.numberOfLeadingZeros(longest));
+        stride = 2 * (3 + planes);
+        blockVertex = new int[Math.min(G.V(), 1024)];
+        words = new long[blockVertex.length * stride];
+        block = new int[G.V()];
+        Arrays.fill(block, -1);
+        v = new Side(G.V(), 0, longest);
+        w = new Side(G.V(), 3 + planes, longest);
+        Arrays.fill(minDist, INFINITY);
+    }
+    
+    // adds a source of the first subset of query lane
+    void addV(int lane, int x) {
+        add(v, lane, x);
+    }
+    
+    // adds a source of the second subset of query lane
+    void addW(int lane, int x) {
+        add(w, lane, x);
+    }
+    
+    // private helper method that returns the offset of the block of x,
+    // handing out a new one if x has none
+    private int blockOf(int x) {
+        int b = block[x];
+        if (b < 0) {
+            if (blocks == blockVertex.length) {
+                blockVertex = Arrays.copyOf(blockVertex, 2 * blocks);
+                words = Arrays.copyOf(words, 2 * blocks * stride);
+            }
+            b = blocks++;
+            block[x] = b;
+            blockVertex[b] = x;
+        }
+        return b * stride;
+    }
+    
+    // private helper method that puts x in the first level of a side of
+    // query lane
+    private void add(Side side, int lane, int x) {
+        side.floor[lane] = Math.min(side.floor[lane], shortestDepth[x]);
+        long bit = 1L << lane;
+        int seen = blockOf(x) + side.base;
+        if ((words[seen] & bit) != 0) return;
+        words[seen] |= bit;
+        if (words[seen + side.current] == 0) side.frontier[side.frontierSize++] = x;
+        words[seen + side.current] |= bit;
+    }
+    
+    // searches queries 0 to lanes - 1, every one of which has sources on
+    // both sides, and writes their results packed by ShortestCommonAncestor
+    // to results; the sources are cleared for the next batch
+    void search(int lanes, long[] results) {
+        // sources shared by both sides of a query are at distance 0
+        for (int i = 0; i < v.frontierSize; i++) {
+            int x = v.frontier[i];
+            int offset = block[x] * stride;
+            meet(words[offset + v.base + v.current] & words[offset + w.base],
+                 x, offset, 0, v);
+        }
+        
+        long all = (lanes == LANES) ? -1L : (1L << lanes) - 1;
+        long done = 0;
+        for (int level = 1; v.frontierSize + w.frontierSize > 0; level++) {
+            // every ancestor still to be found is at least level away, so
+            // queries that already found one that close are done; an
+            // ancestor found while expanding the level before is at least
+            // that level away, so both slots can still change
+            done |= doneAt[level - 1] | doneAt[level];
+            long active = all & ~done;
+            if (active == 0) break;
+            
+            expand(v, w, level, active, lanes);
+            expand(w, v, level, active, lanes);
+        }
+        
+        for (int lane = 0; lane < lanes; lane++) {
+            results[lane] = ShortestCommonAncestor.result(minDist[lane],
+                                                          ancestor[lane]);
+            minDist[lane] = INFINITY;
+        }
+        Arrays.fill(doneAt, 0);
+        for (int b = 0; b < blocks; b++) {
+            block[blockVertex[b]] = -1;
+        }
+        Arrays.fill(words, 0, blocks * stride, 0);
+        blocks = 0;
+        v.clear();
+        w.clear();
+    }
+    
+    // private helper method that finds which queries of a side can skip
+    // which vertices. As in DeluxeBFS, any ancestor found through a vertex x
+    // at distance d is at least d + max(0, floor - longestDepth[x]) away in
+    // all, where floor is the shortest depth of the other side's sources,
+    // so query i skips x once that bound reaches its best distance: when
+    // longestDepth[x] - d is at most key = floor - minDist. The key only
+    // changes when minDist does, so the masks are rebuilt only then, by
+    // bucketing the queries by key and or-ing the buckets from the top
+    private void prune(Side side, Side other, int lanes) {
+        long[] pruned = side.pruned;
+        Arrays.fill(pruned, 0);
+        for (int lane = 0; lane < lanes; lane++) {
+            if (minDist[lane] == INFINITY) continue;
+            int bucket = longest + 1 + other.floor[lane] - minDist[lane];
+            if (bucket >= 0) pruned[bucket] |= 1L << lane;
+        }
+        for (int m = pruned.length - 2; m >= 0; m--) {
+            pruned[m] |= pruned[m + 1];
+        }
+        side.stale = false;
+    }
+    
+    // private helper method that moves the active queries of one side from
+    // the current level to the next, recording where they meet the other
+    // side
+    private void expand(Side side, Side other, int level, long active,
+                        int lanes) {
+        if (side.stale) prune(side, other, lanes);
+        long[] pruned = side.pruned;
+        // the vertices expanded are at distance level - 1
+        int shift = longest + 2 - level;
+        int base = side.base;
+        int current = base + side.current;
+        int next = base + side.next;
+        int otherBase = other.base;
+        for (int i = 0; i < side.frontierSize; i++) {
+            int x = side.frontier[i];
+            int offset = block[x] * stride;
+            long mask = words[offset + current] & active
+                & ~pruned[longestDepth[x] + shift];
+            words[offset + current] = 0;
+            if (mask == 0) continue;
+            
+            for (int e = G.adjStart(x), end = G.adjEnd(x); e < end; e++) {
+                int y = G.target(e);
+                int target = blockOf(y);
+                long seen = words[target + base];
+                long reached = mask & ~seen;
+                if (reached == 0) continue;
+                
+                long otherSeen = words[target + otherBase];
+                words[target + base] = seen | reached;
+                for (int k = 0, bits = level; bits != 0; k++, bits >>>= 1) {
+                    if ((bits & 1) != 0) words[target + base + 3 + k] |= reached;
+                }
+                if (words[target + next] == 0) {
+                    side.nextFrontier[side.nextSize++] = y;
+                }
+                words[target + next] |= reached;
+                
+                meet(reached & otherSeen, y, target, level, other);
+            }
+        }
+        side.advance();
+    }
+    
+    // private helper method that records y, whose block is at offset, as a
+    // common ancestor of every query in lanes, reached at the given distance
+    // by one side and earlier by the other
+    private void meet(long lanes, int y, int offset, int level, Side other) {
+        int dist = offset + other.base + 3;
+        while (lanes != 0) {
+            int lane = Long.numberOfTrailingZeros(lanes);
+            lanes &= lanes - 1;
+            
+            // reads the other side's distance back from its planes
+            int otherDist = 0;
+            for (int k = 0; k < planes; k++) {
+                otherDist |= (int) ((words[dist + k] >>> lane) & 1) << k;
+            }
+            if (level + otherDist < minDist[lane]) {
+                minDist[lane] = level + otherDist;
+                ancestor[lane] = y;
+                doneAt[level + otherDist] |= 1L << lane;
+                // the masks of pruned vertices depend on the distance
+                v.stale = true;
+                w.stale = true;
+            }
+        }
+    }
+    
+    // approximate number of bytes used by this workspace
+    public long memoryUsage() {
+        // the blocks handed out so far, the vertex of each, the block of
+        // each vertex and two level lists per side
+        return 8L * words.length + 4L * blockVertex.length + 20L * G.V();
+    }
+    
+    // do unit testing of this class: checks random batches of pairs
+    // against the single-query BFS
+    public static void main(String[] args) {
+        In in = new In(args[0]);
+        int batches = Integer.parseInt(args[1]);
+        CompactDigraph G = new CompactDigraph(new Digraph(in));
+        TopologicalOrder topological = new TopologicalOrder(G);
+        BitParallelBFS batch = new BitParallelBFS(G, topological);
+        DeluxeBFS bfs = new DeluxeBFS(G, topological);
+        
+        int[] vs = new int[LANES];
+        int[] ws = new int[LANES];
+        long[] results = new long[LANES];
+        int mismatches = 0;
+        for (int b = 0; b < batches; b++) {
+            for (int lane = 0; lane < LANES; lane++) {
+                vs[lane] = StdRandom.uniform(G.V());
+                ws[lane] = StdRandom.uniform(G.V());
+                batch.addV(lane, vs[lane]);
+                batch.addW(lane, ws[lane]);
+            }
+            batch.search(LANES, results);
+            for (int lane = 0; lane < LANES; lane++) {
+                bfs.search(vs[lane], ws[lane]);
+                if (ShortestCommonAncestor.resultDist(results[lane]) != bfs.getDist()) {
+                    StdOut.println("mismatch for " + vs[lane] + " and " + ws[lane]);
+                    mismatches++;
+                }
+            }
+        }
+        StdOut.println(batches * LANES + " pairs checked, " + mismatches
+                           + " mismatches");
+    }
+}
@@ -0,0 +1,263 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  Immutable digraph stored in compressed sparse row form.
+  *  The targets of the edges leaving vertex v are stored contiguously in
+  *  targets[offsets[v]] to targets[offsets[v + 1] - 1], so scanning the
+  *  adjacent vertices of v is a walk over a primitive array.
+  * 
+  *****************************************************************************/
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.In;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class CompactDigraph {
+    
+    // number of vertices
+    private final int numOfV;
+    // vertex-indexed array of the first edge index of each vertex, with one
+    // extra entry holding the number of edges
+    private final int[] offsets;
+    // edge-indexed array of edge targets, grouped by source vertex
+    private final int[] targets;
+    // vertex-indexed array of the number of edges pointing to each vertex
+    private final int[] indegree;
+    
+    // constructor copies the edges of an algs4 Digraph
+    public CompactDigraph(Digraph G) {
+        if (G == null) throw new NullPointerException();
+        
+        numOfV = G.V();
+        offsets = new int[numOfV + 1];
+        targets = new int[G.E()];
+        indegree = new int[numOfV];
+        
+        int edge = 0;
+        for (int v = 0; v < numOfV; v++) {
+            offsets[v] = edge;
+            for (int w : G.adj(v)) {
+                targets[edge++] = w;
+                indegree[w]++;
+            }
+        }
+        offsets[numOfV] = edge;
+    }
+    
+    // constructor takes an edge list, the first numOfE entries of from and
+    // to are the sources and targets of the edges
+    public CompactDigraph(int numOfV, int[] from, int[] to, int numOfE) {
+        if (from == null || to == null) throw new NullPointerException();
+        if (numOfV < 0 || numOfE < 0) throw new IllegalArgumentException();
+        
+        this.numOfV = numOfV;
+        offsets = new int[numOfV + 1];
+        targets = new int[numOfE];
+        indegree = new int[numOfV];
+        
+        // counts the outdegree of each vertex
+        for (int i = 0; i < numOfE; i++) {
+            checkInBounds(from[i]);
+            checkInBounds(to[i]);
+            offsets[from[i] + 1]++;
+            indegree[to[i]]++;
+        }
+        // turns the counts into first edge indices
+        for (int v = 0; v < numOfV; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        // places each edge in the next free slot of its source vertex
+        int[] next = new int[numOfV];
+        for (int v = 0; v < numOfV; v++) {
+            next[v] = offsets[v];
+        }
+        for (int i = 0; i < numOfE; i++) {
+            targets[next[from[i]]++] = to[i];
+        }
+    }
+    
+    // constructor takes the arrays of an already built graph, as read back
+    // from a snapshot
+    private CompactDigraph(int[] offsets, int[] targets) {
+        this.numOfV = offsets.length - 1;
+        this.offsets = offsets;
+        this.targets = targets;
+        indegree = new int[numOfV];
+        for (int w : targets) {
+            checkInBounds(w);
+            indegree[w]++;
+        }
+    }
+    
+    // private helper method to check if a vertex is valid
+    private void checkInBounds(int v) {
+        if (v < 0 || v >= numOfV) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+    
+    // number of vertices
+    public int V() {
+        return numOfV;
+    }
+    
+    // number of edges
+    public int E() {
+        return targets.length;
+    }
+    
+    // index of the first edge leaving v
+    public int adjStart(int v) {
+        return offsets[v];
+    }
+    
+    // index one past the last edge leaving v
+    public int adjEnd(int v) {
+        return offsets[v + 1];
+    }
+    
+    // target of the edge with the given index
+    public int target(int edge) {
+        return targets[edge];
+    }
+    
+    // number of edges leaving v
+    public int outdegree(int v) {
+        checkInBounds(v);
+        return offsets[v + 1] - offsets[v];
+    }
+    
+    // number of edges pointing to v
+    public int indegree(int v) {
+        checkInBounds(v);
+        return indegree[v];
+    }
+    
+    // digraph with every edge reversed
+    public CompactDigraph reverse() {
+        int numOfE = targets.length;
+        int[] from = new int[numOfE];
+        int[] to = new int[numOfE];
+        for (int v = 0; v < numOfV; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                from[e] = targets[e];
+                to[e] = v;
+            }
+        }
+        return new CompactDigraph(numOfV, from, to, numOfE);
+    }
+    
+    // a new digraph with numOfV vertices, at least as many as this one, with
+    // every edge of this digraph plus the first numOfE edges of from and to;
+    // this digraph is not changed
+    public CompactDigraph withEdges(int numOfV, int[] from, int[] to,
+                                    int numOfE) {
+        if (from == null || to == null) throw new NullPointerException();
+        if (numOfV < this.numOfV || numOfE < 0) throw new IllegalArgumentException();
+        
+        int[] newOffsets = new int[numOfV + 1];
+        for (int i = 0; i < numOfE; i++) {
+            if (from[i] < 0 || from[i] >= numOfV || to[i] < 0 || to[i] >= numOfV) {
+                throw new IndexOutOfBoundsException();
+            }
+            newOffsets[from[i] + 1]++;
+        }
+        // each vertex keeps its old edges first, then its new ones
+        for (int v = 0; v < numOfV; v++) {
+            int old = (v < this.numOfV) ? offsets[v + 1] - offsets[v] : 0;
+            newOffsets[v + 1] += newOffsets[v] + old;
+        }
+        int[] newTargets = new int[targets.length + numOfE];
+        int[] next = new int[numOfV];
+        for (int v = 0; v < numOfV; v++) {
+            next[v] = newOffsets[v];
+            if (v < this.numOfV) {
+                int old = offsets[v + 1] - offsets[v];
+                System.arraycopy(targets, offsets[v], newTargets, next[v], old);
+                next[v] += old;
+            }
+        }
+        for (int i = 0; i < numOfE; i++) {
+            newTargets[next[from[i]]++] = to[i];
+        }
+        return new CompactDigraph(newOffsets, newTargets);
+    }
+    
+    // converts back to an algs4 Digraph
+    public Digraph toDigraph() {
+        Digraph G = new Digraph(numOfV);
+        for (int v = 0; v < numOfV; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                G.addEdge(v, targets[e]);
+            }
+        }
+        return G;
+    }
+    
+    // writes the vertex count, edge count, offsets and targets
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(numOfV);
+        out.writeInt(targets.length);
+        for (int offset : offsets) {
+            out.writeInt(offset);
+        }
+        for (int target : targets) {
+            out.writeInt(target);
+        }
+    }
+    
+    // reads a graph written by writeTo, advancing the buffer past it
+    public static CompactDigraph readFrom(ByteBuffer in) {
+        int numOfV = in.getInt();
+        int numOfE = in.getInt();
+        if (numOfV < 0 || numOfE < 0) throw new IllegalArgumentException();
+        // the counts are checked against the bytes left before anything is
+        // allocated, so a corrupt count cannot exhaust the heap
+        if (4L * ((long) numOfV + 1 + numOfE) > in.remaining()) {
+            throw new IllegalArgumentException();
+        }
+        
+        int[] offsets = new int[numOfV + 1];
+        int[] targets = new int[numOfE];
+        in.asIntBuffer().get(offsets);
+        in.position(in.position() + 4 * offsets.length);
+        in.asIntBuffer().get(targets);
+        in.position(in.position() + 4 * targets.length);
+        
+        // checks that the offsets describe the targets array
+        if (offsets[0] != 0 || offsets[numOfV] != numOfE) {
+            throw new IllegalArgumentException();
+        }
+        for (int v = 0; v < numOfV; v++) {
+            if (offsets[v] > offsets[v + 1]) throw new IllegalArgumentException();
+        }
+        for (int w : targets) {
+            if (w < 0 || w >= numOfV) throw new IllegalArgumentException();
+        }
+        return new CompactDigraph(offsets, targets);
+    }
+    
+    // approximate number of bytes used by the arrays of this graph
+    public long memoryUsage() {
+        return 4L * (offsets.length + targets.length + indegree.length);
+    }
+    
+    // do unit testing of this class
+    public static void main(String[] args) {
+        In in = new In(args[0]);
+        Digraph G = new Digraph(in);
+        CompactDigraph compact = new CompactDigraph(G);
+        
+        System.out.println("V = " + compact.V() + ", E = " + compact.E());
+        for (int v = 0; v < compact.V(); v++) {
+            System.out.print(v + ":");
+            for (int e = compact.adjStart(v); e < compact.adjEnd(v); e++) {
+                System.out.print(" " + compact.target(e));
+            }
+            System.out.println();
+        }
+        System.out.println("bytes used: " + compact.memoryUsage());
+    }
+}
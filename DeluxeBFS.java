@@ -1,186 +1,545 @@
 /******************************************************************************
   *  Name:    Greg Umali
   * 
-  *  Description:  Computes the shortest common ancestor using BFS with 
-  *  linear probing hash tables (which uses a resizing array) from source 
-  *  vertices or subsets.
+  *  Description:  Computes the shortest common ancestor using BFS from
+  *  source vertices or subsets. A DeluxeBFS object is a reusable search
+  *  workspace of primitive int arrays; marks are stamped with a search epoch
+  *  so nothing has to be cleared or allocated between queries.
   * 
   *****************************************************************************/
 
-import edu.princeton.cs.algs4.LinearProbingHashST;
 import edu.princeton.cs.algs4.Digraph;
 import edu.princeton.cs.algs4.Queue;
 import edu.princeton.cs.algs4.In;
+import java.util.Arrays;
 
 public class DeluxeBFS {
     
     // used to initialize current minimum distance
     private static final int INFINITY = Integer.MAX_VALUE;
     
+    // digraph searched by this workspace
+    private final CompactDigraph G;
+    
+    // vertex-indexed shortest and longest path lengths to the root, used to
+    // prune the search; null when searches do not prune
+    private final int[] shortestDepth;
+    private final int[] longestDepth;
+    // root of the digraph, -1 when searches do not prune
+    private final int root;
+    
     // stores distance to each vertex from a source vertex
-    private LinearProbingHashST<Integer, Integer> vDistTo; 
+    private final int[] vDistTo;
     
     // stores distance to each vertex from the second source vertex
-    private LinearProbingHashST<Integer, Integer> wDistTo;
+    private final int[] wDistTo;
+    
+    // vertex-indexed previous vertex on a shortest path from each side's
+    // sources, used to rebuild the ancestral path
+    private final int[] vEdgeTo;
+    private final int[] wEdgeTo;
+    
+    // vertex-indexed epoch stamps; a distance is only valid for the current
+    // search if the stamp of its vertex equals the current epoch
+    private final int[] vMarked;
+    private final int[] wMarked;
+    
+    // array-backed queues, each vertex is enqueued at most once per side
+    private final int[] vQueue;
+    private final int[] wQueue;
+    
+    // index of the first unprocessed and next free slot of each queue
+    private int vHead, vTail;
+    private int wHead, wTail;
+    
+    // identifies the current search
+    private int epoch;
     
     // stores ancestor
     private int ancestor;
     
     // stores minimum distance
     private int minDist;
-
+    
+    // edges scanned and levels expanded by each side of the last search
+    private long vEdges, wEdges;
+    private int vLevels, wLevels;
+    // frontier vertices each side of the last search did not expand
+    private int vPruned, wPruned;
+    // edges scanned and vertices pruned by the last level expanded
+    private long levelEdges;
+    private int levelPruned;
+    
+    // whether searches time each side, and the nanoseconds each side spent
+    // in the last search
+    private boolean timed;
+    private long vNanos, wNanos;
+    
+    // limit of later searches, null for none, and whether the last search
+    // finished instead of being stopped by it
+    private SearchLimit limit;
+    private boolean exact;
+    
+    // statistics handed out by stats(), reused between searches
+    private final SearchStats stats = new SearchStats();
+    
+    // constructor creates an empty workspace for searches in G
+    public DeluxeBFS(CompactDigraph G) {
+        this(G, null);
+    }
+    
+    // constructor creates an empty workspace for searches in G that prune
+    // by the depths of its topological order, which may be null
+    public DeluxeBFS(CompactDigraph G, TopologicalOrder topological) {
+        this.G = G;
+        int numOfV = G.V();
+        if (topological == null) {
+            shortestDepth = null;
+            longestDepth = null;
+            root = -1;
+        } else {
+            if (topological.V() != numOfV) throw new IllegalArgumentException();
+            shortestDepth = topological.depths();
+            longestDepth = topological.maxDepths();
+            root = topological.root();
+        }
+        vDistTo = new int[numOfV];
+        wDistTo = new int[numOfV];
+        vEdgeTo = new int[numOfV];
+        wEdgeTo = new int[numOfV];
+        vMarked = new int[numOfV];
+        wMarked = new int[numOfV];
+        vQueue = new int[numOfV];
+        wQueue = new int[numOfV];
+        epoch = 0;
+    }
+    
     // constructor for two source vertices
     public DeluxeBFS(Digraph G, int v, int w) {
-        
-        // initializes hash table
-        vDistTo = new LinearProbingHashST<Integer, Integer>();
-        wDistTo = new LinearProbingHashST<Integer, Integer>();
-        
+        this(new CompactDigraph(G));
+        search(v, w);
+    }
+    
+    // constructor for two interable objects
+    public DeluxeBFS(Digraph G, Iterable<Integer> vSources,
+                     Iterable<Integer> wSources ) {
+        this(new CompactDigraph(G));
+        search(vSources, wSources);
+    }
+    
+    // finds shortest common ancestor and distance of two source vertices
+    public void search(int v, int w) {
         if (v == w) {
+            // nothing is searched, the statistics are all zero
+            reset();
             ancestor = v;
             minDist = 0;
         } else {
-        // call to helper method to find shortest common ancestor and distance
-        bfs(G, v, w);
+            // call to helper method to find shortest common ancestor and
+            // distance
+            bfs(v, w);
         }
     }
-
-    // constructor for two interable objects
-    public DeluxeBFS(Digraph G, Iterable<Integer> vSources, 
-                     Iterable<Integer> wSources ) {
+    
+    // finds shortest common ancestor and distance of two source subsets
+    public void search(Iterable<Integer> vSources, Iterable<Integer> wSources) {
+        bfs(vSources, wSources);
+    }
+    
+    // finds shortest common ancestor and distance of two source arrays,
+    // whose vertices must all be valid
+    public void search(int[] vSources, int[] wSources) {
+        bfs(vSources, wSources);
+    }
+    
+    // starts a new search, stale marks from older searches become invalid
+    private void reset() {
+        epoch++;
+        // on overflow, clear the stamps once and start counting again
+        if (epoch == INFINITY) {
+            Arrays.fill(vMarked, 0);
+            Arrays.fill(wMarked, 0);
+            epoch = 1;
+        }
+        vHead = 0;
+        vTail = 0;
+        wHead = 0;
+        wTail = 0;
+        vEdges = 0;
+        wEdges = 0;
+        vLevels = 0;
+        wLevels = 0;
+        vPruned = 0;
+        wPruned = 0;
+        vNanos = 0;
+        wNanos = 0;
+        exact = true;
+    }
+    
+    // helper method BFS from two source vertices
+    private void bfs(int s, int w) {
+        reset();
+        
+        // stores distance to source as 0 and puts it on the queue
+        vMarked[s] = epoch;
+        vDistTo[s] = 0;
+        vQueue[vTail++] = s;
         
-        // initializes hash table
-        vDistTo = new LinearProbingHashST<Integer, Integer>();
-        wDistTo = new LinearProbingHashST<Integer, Integer>();
+        wMarked[w] = epoch;
+        wDistTo[w] = 0;
+        wQueue[wTail++] = w;
         
-        // call to helper method to find shortest common ancestor and distance
-        bfs(G, vSources, wSources);
+        // call to helper method that interleaves both searches
+        search();
     }
-
-    // helper method BFS from two source vertices
-    private void bfs(Digraph G, int s, int w) {
-        
-        int curMinDist = INFINITY;
-        int curAnc = -1;
-        
-        // stores reachable ancestors from source s
-        Queue<Integer> q = new Queue<Integer>();
-       
-        // stores distance to source as 0
-        vDistTo.put(s, 0);
-        // puts the source on the queue
-        q.enqueue(s);
-        
-        // finds the distance to each reachable ancestor and stores it
-        // in hash table
-        while (!q.isEmpty()) {
-            int v = q.dequeue();
-            
-            for (int temp : G.adj(v)) {
-                if (!vDistTo.contains(temp)) {
-                    vDistTo.put(temp, vDistTo.get(v) + 1);
-                    q.enqueue(temp);
-                }
-                
+    
+    // BFS from multiple sources
+    
+    private void bfs(Iterable<Integer> vSources, Iterable<Integer> wSources) {
+        reset();
+        
+        // sets all distances to source vertices to 0
+        for (int s : vSources) {
+            if (vMarked[s] != epoch) {
+                vMarked[s] = epoch;
+                vDistTo[s] = 0;
+                vQueue[vTail++] = s;
+            }
+        }
+        
+        for (int s : wSources) {
+            if (wMarked[s] != epoch) {
+                wMarked[s] = epoch;
+                wDistTo[s] = 0;
+                wQueue[wTail++] = s;
             }
         }
         
-        // stores reachable ancestors from source w
-        Queue<Integer> p = new Queue<Integer>();
+        search();
+    }
+    
+    // BFS from multiple sources given as arrays
+    
+    private void bfs(int[] vSources, int[] wSources) {
+        reset();
         
-        // source distance = 0
-        wDistTo.put(w, 0);
-        // add source to queue
-        p.enqueue(w);
-
-        // finds the distance to each reachable ancestor, checks if reachable
-        // ancestor is the shortest common ancestor, and stores distance to
-        // ancestor from source in hash table 
-        while(!p.isEmpty()) {
-            int pAnc = p.dequeue();
-
-            // checks and stores closest ancestor
-            if (vDistTo.contains(pAnc) && 
-                    vDistTo.get(pAnc) + wDistTo.get(pAnc) < curMinDist) {
-                    curMinDist =  vDistTo.get(pAnc) + wDistTo.get(pAnc);
-                    curAnc = pAnc;
-                }
-            
-            // adds all possible ancestors to queue if not added before
-            for (int temp : G.adj(pAnc)) {
-                if (!wDistTo.contains(temp)) {
-                    wDistTo.put(temp, wDistTo.get(pAnc) + 1);
-                    p.enqueue(temp);
-                }       
-                
+        for (int s : vSources) {
+            if (vMarked[s] != epoch) {
+                vMarked[s] = epoch;
+                vDistTo[s] = 0;
+                vQueue[vTail++] = s;
             }
         }
         
-        // sets instance variables
-            minDist = curMinDist;
-            ancestor = curAnc;
+        for (int s : wSources) {
+            if (wMarked[s] != epoch) {
+                wMarked[s] = epoch;
+                wDistTo[s] = 0;
+                wQueue[wTail++] = s;
+            }
+        }
         
+        search();
     }
-
-    // BFS from multiple sources
     
-    private void bfs(Digraph G, Iterable<Integer> vSources, 
-                     Iterable<Integer> wSources ) {
+    // level-synchronized search that alternates between the v frontier and
+    // the w frontier. Every vertex is checked against the other side when it
+    // is discovered, so the current best is known as early as possible. A
+    // side stops expanding once its next level is at least the current
+    // minimum distance: any ancestor it could still discover would be that
+    // far from its own sources alone, so it can never improve the answer.
+    // With depths, single frontier vertices are pruned by a tighter bound,
+    // see expandLevel(). A limit is checked before every level; a search it
+    // stops keeps the best ancestor found so far, or the root, which is a
+    // common ancestor at the sum of the two floors, if that is closer.
+    private void search() {
+        
+        minDist = INFINITY;
+        ancestor = -1;
         
+        // sources shared by both sides are common ancestors at distance 0
+        for (int i = 0; i < wTail; i++) {
+            int s = wQueue[i];
+            if (vMarked[s] == epoch) {
+                minDist = 0;
+                ancestor = s;
+                return;
+            }
+        }
         
-        int curMinDist = INFINITY;
-        int curAnc = -1;
+        // depth of the level currently held in each frontier
+        int vDepth = 0;
+        int wDepth = 0;
         
-        // stores possible ancestors from vSources
-        Queue<Integer> q = new Queue<Integer>();
-        // sets all distances to source vertices to 0
-        for (int s : vSources) {
-            vDistTo.put(s, 0);
-            q.enqueue(s);
+        // shortest depth of the sources of each side, from which the other
+        // side's pruning bound is computed; 0 disables pruning
+        int vFloor = 0;
+        int wFloor = 0;
+        if (shortestDepth != null) {
+            vFloor = INFINITY;
+            for (int i = 0; i < vTail; i++) {
+                vFloor = Math.min(vFloor, shortestDepth[vQueue[i]]);
+            }
+            wFloor = INFINITY;
+            for (int i = 0; i < wTail; i++) {
+                wFloor = Math.min(wFloor, shortestDepth[wQueue[i]]);
+            }
         }
         
-        // calculate and store all distances for possible ancestors
-        while (!q.isEmpty()) {
-            int v = q.dequeue();
-            for (int temp : G.adj(v)) {
-                if (!vDistTo.contains(temp)) {
-                    vDistTo.put(temp, vDistTo.get(v) + 1);
-                    q.enqueue(temp);
+        // when timed, the clock is read once per level, each reading ending
+        // the level before
+        long last = timed ? System.nanoTime() : 0;
+        
+        while (true) {
+            int vSize = vTail - vHead;
+            int wSize = wTail - wHead;
+            boolean vActive = vSize > 0 && vDepth + 1 < minDist;
+            boolean wActive = wSize > 0 && wDepth + 1 < minDist;
+            if (!vActive && !wActive) break;
+            
+            if (limit != null && limit.exceeded(vTail + wTail)) {
+                exact = false;
+                if (root >= 0 && vFloor + wFloor < minDist) {
+                    minDist = vFloor + wFloor;
+                    ancestor = root;
+                }
+                break;
+            }
+            
+            // expands the shallower side first, smaller frontier on ties,
+            // which keeps both searches close to the same depth
+            boolean expandV;
+            if (!wActive) expandV = true;
+            else if (!vActive) expandV = false;
+            else if (vDepth != wDepth) expandV = vDepth < wDepth;
+            else expandV = vSize <= wSize;
+            
+            if (expandV) {
+                vDepth++;
+                int levelEnd = vTail;
+                vTail = expandLevel(vQueue, vHead, levelEnd, vTail,
+                                    vDistTo, vEdgeTo, vMarked, wDistTo, wMarked,
+                                    vDepth, wFloor);
+                vHead = levelEnd;
+                vEdges += levelEdges;
+                vPruned += levelPruned;
+                if (timed) {
+                    long now = System.nanoTime();
+                    vNanos += now - last;
+                    last = now;
+                }
+            } else {
+                wDepth++;
+                int levelEnd = wTail;
+                wTail = expandLevel(wQueue, wHead, levelEnd, wTail,
+                                    wDistTo, wEdgeTo, wMarked, vDistTo, vMarked,
+                                    wDepth, vFloor);
+                wHead = levelEnd;
+                wEdges += levelEdges;
+                wPruned += levelPruned;
+                if (timed) {
+                    long now = System.nanoTime();
+                    wNanos += now - last;
+                    last = now;
                 }
-                
             }
         }
+        vLevels = vDepth;
+        wLevels = wDepth;
+    }
+    
+    // expands the level queue[from, to), appending newly discovered vertices
+    // at tail with the given depth and checking each of them against the
+    // other side's distances. Returns the new tail of the queue, and leaves
+    // the number of edges scanned in levelEdges and of vertices pruned in
+    // levelPruned.
+    //
+    // A vertex x of the level is not expanded if no ancestor reached through
+    // it can beat the current minimum. Let floor be the shortest depth of
+    // the other side's sources, and a any ancestor of x. The other side is
+    // at least floor - depth(a) from a, since depth(s) <= dist(s, a) +
+    // depth(a) for each of its sources s. And depth(a) <= maxDepth(a) <=
+    // maxDepth(x) - dist(x, a), since the longest depth drops by at least
+    // one along every edge. So every ancestral path through x is at least
+    // (depth - 1) + max(0, floor - maxDepth(x)) long, where depth - 1 is
+    // the distance to x. Pruned vertices keep their marks, so they are still
+    // checked as ancestors; vertices only reachable through them may be
+    // found on longer paths or not at all, but all of those paths are at
+    // least the minimum already known.
+    private int expandLevel(int[] queue, int from, int to, int tail,
+                            int[] distTo, int[] edgeTo, int[] marked,
+                            int[] otherDistTo, int[] otherMarked, int depth,
+                            int floor) {
         
-        // stores possible ancestors from wSources
-        Queue<Integer> p = new Queue<Integer>();
+        long scanned = 0;
+        int pruned = 0;
+        for (int i = from; i < to; i++) {
+            int v = queue[i];
+            if (floor > 0) {
+                int climb = floor - longestDepth[v];
+                if (climb > 0 && depth - 1 + climb >= minDist) {
+                    pruned++;
+                    continue;
+                }
+            }
+            int start = G.adjStart(v);
+            int end = G.adjEnd(v);
+            scanned += end - start;
+            
+            for (int e = start; e < end; e++) {
+                int temp = G.target(e);
+                if (marked[temp] != epoch) {
+                    marked[temp] = epoch;
+                    distTo[temp] = depth;
+                    edgeTo[temp] = v;
+                    queue[tail++] = temp;
+                    
+                    // checks and stores closest ancestor
+                    if (otherMarked[temp] == epoch &&
+                            depth + otherDistTo[temp] < minDist) {
+                        minDist = depth + otherDistTo[temp];
+                        ancestor = temp;
+                    }
+                }
+            }
+        }
         
-        for (int s : wSources) {
-            wDistTo.put(s, 0);
-            p.enqueue(s);
+        levelEdges = scanned;
+        levelPruned = pruned;
+        return tail;
+    }
+    
+    // every vertex reachable from the sources with its distance, each packed
+    // as (vertex << 32) | distance and sorted by vertex; the sources must all
+    // be valid
+    public long[] ancestors(int[] sources) {
+        reset();
+        
+        for (int s : sources) {
+            if (vMarked[s] != epoch) {
+                vMarked[s] = epoch;
+                vDistTo[s] = 0;
+                vQueue[vTail++] = s;
+            }
         }
         
-        while(!p.isEmpty()) {
-            int pAnc = p.dequeue();
+        // plain BFS to the root, the queue ends up holding every reachable
+        // vertex
+        while (vHead < vTail) {
+            int v = vQueue[vHead++];
+            for (int e = G.adjStart(v), end = G.adjEnd(v); e < end; e++) {
+                int temp = G.target(e);
+                if (vMarked[temp] != epoch) {
+                    vMarked[temp] = epoch;
+                    vDistTo[temp] = vDistTo[v] + 1;
+                    vQueue[vTail++] = temp;
+                }
+            }
+        }
+        
+        long[] reached = new long[vTail];
+        for (int i = 0; i < vTail; i++) {
+            int v = vQueue[i];
+            reached[i] = ((long) v << 32) | vDistTo[v];
+        }
+        Arrays.sort(reached);
+        return reached;
+    }
+    
+    // receives the vertices found by nearest(), returns false to stop
+    public interface Visitor {
+        boolean visit(int v, int dist);
+    }
+    
+    // visits every vertex in order of its shortest ancestral path length to
+    // the sources, until the visitor returns false. The length to a vertex x
+    // is the least dist(sources, a) + dist(x, a) over common ancestors a, so
+    // the search walks up from the sources once, then walks down the
+    // hyponym edges from every ancestor a, entering a at level
+    // dist(sources, a). Levels are expanded in increasing order, so each
+    // vertex is visited once, with its final length.
+    public void nearest(int[] sources, CompactDigraph hyponyms, Visitor visitor) {
+        
+        // ancestors of the sources, sorted by their distance
+        long[] reached = ancestors(sources);
+        long[] seeds = new long[reached.length];
+        for (int i = 0; i < reached.length; i++) {
+            long dist = (int) reached[i];
+            seeds[i] = (dist << 32) | (reached[i] >>> 32);
+        }
+        Arrays.sort(seeds);
+        
+        reset();
+        int next = 0;
+        int level = 0;
+        
+        while (true) {
+            // ancestors at this distance join the current level
+            while (next < seeds.length && (int) (seeds[next] >>> 32) == level) {
+                int v = (int) seeds[next++];
+                if (wMarked[v] != epoch) {
+                    wMarked[v] = epoch;
+                    wDistTo[v] = level;
+                    wQueue[wTail++] = v;
+                    if (!visitor.visit(v, level)) return;
+                }
+            }
             
-            // calculates shortest ancestor and distnace
-            if (vDistTo.contains(pAnc) && 
-                vDistTo.get(pAnc) + wDistTo.get(pAnc) < curMinDist) {
-                curMinDist =  vDistTo.get(pAnc) + wDistTo.get(pAnc);
-                curAnc = pAnc;
+            if (wHead == wTail) {
+                // nothing left at this level, jump to the next ancestor
+                if (next == seeds.length) return;
+                level = (int) (seeds[next] >>> 32);
+                continue;
             }
             
-            for (int temp : G.adj(pAnc)) {
-                if (!wDistTo.contains(temp)) {
-                    wDistTo.put(temp, wDistTo.get(pAnc) + 1);
-                    p.enqueue(temp);
+            // expands the level down the hyponym edges
+            int levelEnd = wTail;
+            for (int i = wHead; i < levelEnd; i++) {
+                int v = wQueue[i];
+                for (int e = hyponyms.adjStart(v), end = hyponyms.adjEnd(v);
+                     e < end; e++) {
+                    int temp = hyponyms.target(e);
+                    if (wMarked[temp] != epoch) {
+                        wMarked[temp] = epoch;
+                        wDistTo[temp] = level + 1;
+                        wQueue[wTail++] = temp;
+                        if (!visitor.visit(temp, level + 1)) return;
+                    }
                 }
             }
+            wHead = levelEnd;
+            level++;
         }
-        
-        // sets instance variables
-        minDist = curMinDist;
-        ancestor = curAnc;
-        
+    }
+    
+    // whether later searches time each side; timing costs a clock read per
+    // level, so it is off unless metrics are collected
+    public void setTimed(boolean timed) {
+        this.timed = timed;
+    }
+    
+    // limit of later searches from search(), or null for none; the
+    // ancestors() and nearest() walks are never limited
+    public void setLimit(SearchLimit limit) {
+        this.limit = limit;
+    }
+    
+    // did the last search finish? If its limit stopped it, the distance is
+    // only an upper bound, the ancestor is a common ancestor at that
+    // distance, and there is no path; without depths to bound by, none may
+    // have been found
+    public boolean isExact() {
+        return exact;
+    }
+    
+    // statistics of the last search from search(); the object is owned by
+    // this workspace and overwritten by the next call
+    public SearchStats stats() {
+        // every vertex before the head of a queue was expanded or pruned
+        stats.setV(vTail, vEdges, vLevels, vHead - vPruned, vPruned, vNanos);
+        stats.setW(wTail, wEdges, wLevels, wHead - wPruned, wPruned, wNanos);
+        stats.setStopped(!exact);
+        return stats;
     }
     
     // getter method to return shortest common ancestor
@@ -192,8 +551,39 @@ public class DeluxeBFS {
     public int getDist() {
         return minDist;
     }
-
-
+    
+    // vertices of a shortest ancestral path of the last search, from a
+    // source on the v side up to the ancestor and down to a source on the
+    // w side. A search stopped by its limit has no path, since its ancestor
+    // may not have been reached, so this throws IllegalStateException
+    public int[] getPath() {
+        if (!exact) throw new IllegalStateException("search stopped by its limit");
+        if (ancestor < 0) return new int[0];
+        int[] path = new int[minDist + 1];
+        
+        // a distance of 0 means the ancestor is a source on both sides
+        if (minDist == 0) {
+            path[0] = ancestor;
+            return path;
+        }
+        
+        // walks back from the ancestor to a v source, filling in reverse
+        int i = vDistTo[ancestor];
+        for (int x = ancestor; ; x = vEdgeTo[x]) {
+            path[i--] = x;
+            if (vDistTo[x] == 0) break;
+        }
+        
+        // then walks back from the ancestor to a w source
+        i = vDistTo[ancestor] + 1;
+        for (int x = ancestor; wDistTo[x] > 0; ) {
+            x = wEdgeTo[x];
+            path[i++] = x;
+        }
+        return path;
+    }
+    
+    
     
     public static void main(String[] args) {
         In in = new In(args[0]);
@@ -210,11 +600,12 @@ public class DeluxeBFS {
         wSources.enqueue(1);
         wSources.enqueue(9);
         
-        DeluxeBFS bfs2 = new DeluxeBFS(G, vSources, wSources);
-        System.out.println("ancestor = (1) " + bfs2.getAnc());
-
+        // reuses the workspace of the first search
+        bfs.search(vSources, wSources);
+        System.out.println("ancestor = (1) " + bfs.getAnc());
+        
         
     }
-
-
-}
\ No newline at end of file
+    
+    
+}
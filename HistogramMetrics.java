@@ -0,0 +1,217 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  Keeps the statistics of shortest common ancestor queries
+  *  in histograms: the time of each query and of its lookup and search
+  *  phases, the vertices and edges visited by each side of the search, the
+  *  levels it expanded, and the share of frontier vertices it pruned. Can
+  *  be registered as a JMX MBean, and printed as a report.
+  * 
+  *****************************************************************************/
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class HistogramMetrics implements QueryMetrics, HistogramMetricsMBean {
+    
+    // time of whole queries, and of their lookup and search phases
+    private final LogHistogram latency = new LogHistogram();
+    private final LogHistogram lookup = new LogHistogram();
+    private final LogHistogram vSearch = new LogHistogram();
+    private final LogHistogram wSearch = new LogHistogram();
+    
+    // vertices reached by each side, by both, and levels expanded by both
+    private final LogHistogram vVertices = new LogHistogram();
+    private final LogHistogram wVertices = new LogHistogram();
+    private final LogHistogram vertices = new LogHistogram();
+    private final LogHistogram levels = new LogHistogram();
+    
+    // edges scanned by both sides
+    private final LogHistogram edges = new LogHistogram();
+    
+    // number of queries answered by the tree or the ancestor index, and
+    // of those whose search was stopped by its limit
+    private final LongAdder indexed = new LongAdder();
+    private final LongAdder stopped = new LongAdder();
+    // frontier vertices that were expanded or pruned, and those pruned
+    private final LongAdder frontier = new LongAdder();
+    private final LongAdder pruned = new LongAdder();
+    
+    // name this object is registered under, or null
+    private ObjectName name;
+    
+    // records one query; queries answered without a search only add
+    // to the time histograms
+    public void record(SearchStats stats) {
+        latency.record(stats.totalNanos());
+        lookup.record(stats.lookupNanos());
+        if (stats.indexed()) {
+            indexed.increment();
+            return;
+        }
+        if (stats.stopped()) stopped.increment();
+        vSearch.record(stats.vNanos());
+        wSearch.record(stats.wNanos());
+        vVertices.record(stats.vVertices());
+        wVertices.record(stats.wVertices());
+        vertices.record(stats.vVertices() + stats.wVertices());
+        levels.record(stats.vLevels() + stats.wLevels());
+        edges.record(stats.vEdges() + stats.wEdges());
+        int prunedVertices = stats.vPruned() + stats.wPruned();
+        pruned.add(prunedVertices);
+        frontier.add(prunedVertices + stats.vExpanded() + stats.wExpanded());
+    }
+    
+    // registers this object with the platform MBean server under
+    // WordNet:type=QueryMetrics,name=<name>
+    public synchronized void register(String name) {
+        if (name == null) throw new NullPointerException();
+        if (this.name != null) throw new IllegalStateException("already registered");
+        try {
+            ObjectName objectName =
+                new ObjectName("WordNet:type=QueryMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.name = objectName;
+        } catch (JMException e) {
+            throw new IllegalArgumentException("could not register " + name, e);
+        }
+    }
+    
+    // removes this object from the platform MBean server, if registered
+    public synchronized void unregister() {
+        if (name == null) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+        } catch (JMException e) {
+            throw new IllegalStateException("could not unregister " + name, e);
+        } finally {
+            name = null;
+        }
+    }
+    
+    // histogram of the time of whole queries
+    public LogHistogram latency() {
+        return latency;
+    }
+    
+    // histogram of the time spent looking up nouns
+    public LogHistogram lookup() {
+        return lookup;
+    }
+    
+    // histograms of the time spent searching from each side
+    public LogHistogram vSearch() {
+        return vSearch;
+    }
+    
+    public LogHistogram wSearch() {
+        return wSearch;
+    }
+    
+    // histogram of the vertices reached by both sides
+    public LogHistogram vertices() {
+        return vertices;
+    }
+    
+    public long getQueries() {
+        return latency.count();
+    }
+    
+    public long getIndexedQueries() {
+        return indexed.sum();
+    }
+    
+    public long getStoppedQueries() {
+        return stopped.sum();
+    }
+    
+    public double getMeanLatency() {
+        return latency.mean();
+    }
+    
+    public long getMedianLatency() {
+        return latency.percentile(0.5);
+    }
+    
+    public long getP99Latency() {
+        return latency.percentile(0.99);
+    }
+    
+    public long getMaxLatency() {
+        return latency.max();
+    }
+    
+    public long getP99Lookup() {
+        return lookup.percentile(0.99);
+    }
+    
+    public long getP99SearchV() {
+        return vSearch.percentile(0.99);
+    }
+    
+    public long getP99SearchW() {
+        return wSearch.percentile(0.99);
+    }
+    
+    public double getMeanVerticesV() {
+        return vVertices.mean();
+    }
+    
+    public double getMeanVerticesW() {
+        return wVertices.mean();
+    }
+    
+    public double getMeanEdges() {
+        return edges.mean();
+    }
+    
+    public long getP99Vertices() {
+        return vertices.percentile(0.99);
+    }
+    
+    public double getMeanLevels() {
+        return levels.mean();
+    }
+    
+    public double getPruningRatio() {
+        long total = frontier.sum();
+        if (total == 0) return 0;
+        return (double) pruned.sum() / total;
+    }
+    
+    public void reset() {
+        latency.reset();
+        lookup.reset();
+        vSearch.reset();
+        wSearch.reset();
+        vVertices.reset();
+        wVertices.reset();
+        vertices.reset();
+        levels.reset();
+        edges.reset();
+        indexed.reset();
+        stopped.reset();
+        frontier.reset();
+        pruned.reset();
+    }
+    
+    // report of every histogram
+    public String toString() {
+        return "queries: " + getQueries() + " (" + getIndexedQueries()
+            + " indexed, " + getStoppedQueries() + " stopped)\n"
+            + "latency (ns): " + latency + "\n"
+            + "lookup (ns): " + lookup + "\n"
+            + "v search (ns): " + vSearch + "\n"
+            + "w search (ns): " + wSearch + "\n"
+            + "v vertices: " + vVertices + "\n"
+            + "w vertices: " + wVertices + "\n"
+            + "edges: " + edges + "\n"
+            + "levels: " + levels + "\n"
+            + String.format("pruned: %.1f%% of %d frontier vertices",
+                            100 * getPruningRatio(), frontier.sum());
+    }
+}
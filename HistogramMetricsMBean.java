@@ -0,0 +1,49 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  Management interface of HistogramMetrics, through which
+  *  JMX clients such as jconsole read the query statistics. Times are in
+  *  nanoseconds.
+  * 
+  *****************************************************************************/
+
+public interface HistogramMetricsMBean {
+    
+    // number of queries recorded
+    long getQueries();
+    
+    // number of queries answered by the tree or the ancestor index
+    long getIndexedQueries();
+    
+    // number of queries stopped by their deadline or vertex budget, which
+    // were answered with an upper bound
+    long getStoppedQueries();
+    
+    // mean, median, 99th percentile and largest time of a whole query
+    double getMeanLatency();
+    long getMedianLatency();
+    long getP99Latency();
+    long getMaxLatency();
+    
+    // 99th percentile of the time of each phase of a query
+    long getP99Lookup();
+    long getP99SearchV();
+    long getP99SearchW();
+    
+    // mean vertices reached by each side and edges scanned by both
+    double getMeanVerticesV();
+    double getMeanVerticesW();
+    double getMeanEdges();
+    
+    // 99th percentile of the vertices reached by both sides
+    long getP99Vertices();
+    
+    // mean levels expanded by both sides
+    double getMeanLevels();
+    
+    // share of the frontier vertices that were pruned instead of expanded
+    double getPruningRatio();
+    
+    // forgets every query recorded
+    void reset();
+}
@@ -0,0 +1,117 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  Concurrent histogram of non-negative long values, such as
+  *  latencies in nanoseconds or vertex counts, in the style of HdrHistogram.
+  *  Each power of two is split into 16 equal buckets, so every value is
+  *  recorded with at most 1/16 relative error in a fixed array of counters,
+  *  and recording neither allocates nor locks. Percentiles are reported as
+  *  the highest value of their bucket.
+  * 
+  *****************************************************************************/
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LogHistogram {
+    
+    // number of bits of each value kept exactly below its highest bit
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    
+    // number of values in each bucket
+    private final AtomicLongArray counts =
+        new AtomicLongArray((64 - SUB_BITS) * SUB_BUCKETS);
+    // number, sum and largest of the values recorded
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+    
+    // bucket of a value: values below SUB_BUCKETS have their own bucket,
+    // larger ones share it with values equal in their highest SUB_BITS + 1
+    // bits
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + ((int) (value >>> shift) & (SUB_BUCKETS - 1));
+    }
+    
+    // highest value that falls in a bucket
+    private static long highest(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+    
+    // records a value, negative values are recorded as 0
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+    
+    // number of values recorded
+    public long count() {
+        return count.sum();
+    }
+    
+    // mean of the values recorded, 0 if none
+    public double mean() {
+        long n = count.sum();
+        if (n == 0) return 0;
+        return (double) sum.sum() / n;
+    }
+    
+    // largest value recorded, 0 if none
+    public long max() {
+        return max.get();
+    }
+    
+    // smallest value that the given fraction of the values do not exceed,
+    // within the precision of its bucket; 0 if nothing was recorded
+    public long percentile(double fraction) {
+        if (fraction < 0 || fraction > 1) throw new IllegalArgumentException();
+        
+        // totals the buckets rather than reading count, so values recorded
+        // during the walk cannot push the rank past the last bucket
+        long n = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            n += counts.get(i);
+        }
+        if (n == 0) return 0;
+        
+        long rank = Math.max(1, (long) Math.ceil(fraction * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(highest(i), max.get());
+        }
+        return max.get();
+    }
+    
+    // forgets every value recorded
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+    
+    // summary of the values recorded
+    public String toString() {
+        return String.format("count = %d, mean = %.1f, p50 = %d, p90 = %d, "
+                                 + "p99 = %d, p99.9 = %d, max = %d",
+                             count(), mean(), percentile(0.5), percentile(0.9),
+                             percentile(0.99), percentile(0.999), max());
+    }
+}
@@ -0,0 +1,46 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  Immutable candidate noun returned by prefix and fuzzy
+  *  lookups in WordNet: the noun, the synset ID's it belongs to, and its
+  *  edit distance from the word that was looked up.
+  * 
+  *****************************************************************************/
+
+public class NounMatch {
+    
+    // the matching noun
+    private final String noun;
+    // synset ID's the noun belongs to
+    private final int[] synsets;
+    // edit distance from the word looked up, 0 for prefix matches
+    private final int edits;
+    
+    // constructor takes every field
+    public NounMatch(String noun, int[] synsets, int edits) {
+        if (noun == null || synsets == null) throw new NullPointerException();
+        this.noun = noun;
+        this.synsets = synsets.clone();
+        this.edits = edits;
+    }
+    
+    // the matching noun
+    public String noun() {
+        return noun;
+    }
+    
+    // synset ID's the noun belongs to
+    public int[] synsets() {
+        return synsets.clone();
+    }
+    
+    // edit distance from the word looked up
+    public int edits() {
+        return edits;
+    }
+    
+    // string representation of the match
+    public String toString() {
+        return noun + " (" + edits + " edits, " + synsets.length + " synsets)";
+    }
+}
@@ -25,17 +25,20 @@ public class Outcast {
         // tracks current outcast noun in the wordnet
         String currentOutcast = "";
         
-        for (String queryNoun : nouns) {
+        // distances between every pair of nouns, computed in one batch
+        int[][] distances = wordnet.distanceMatrix(nouns);
+        
+        for (int i = 0; i < nouns.length; i++) {
             int maxDist = 0;
             
-            for (String compNoun : nouns) {
+            for (int j = 0; j < nouns.length; j++) {
                 // from one noun, compute distance to all others
-                maxDist += wordnet.distance(queryNoun, compNoun);
+                maxDist += distances[i][j];
             }
             
             if (maxDist > maxTotalDist) {
                 // updates largest distance and corresponding noun
-                currentOutcast = queryNoun;
+                currentOutcast = nouns[i];
                 maxTotalDist = maxDist;
             }
         }
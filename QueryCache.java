@@ -0,0 +1,181 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  Bounded, lock-free cache of noun pair query results, safe
+  *  to share between threads. Keys are unordered pairs of nouns, values the
+  *  distance and ancestor synset ID packed by ShortestCommonAncestor.
+  *  Entries live in small sets of slots chosen by the hash of the pair; when
+  *  a set is full, the entry with the fewest hits is evicted and the hits of
+  *  the others are halved, so frequently asked pairs stay cached while old
+  *  popularity fades.
+  * 
+  *****************************************************************************/
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class QueryCache {
+    
+    // returned by get() when the pair is not cached
+    public static final long MISS = -1L;
+    
+    // number of slots in each set
+    private static final int WAYS = 4;
+    // hits are counted up to this value
+    private static final int MAX_FREQUENCY = 15;
+    
+    // slots of all sets, set i occupying slots WAYS * i to WAYS * i + WAYS - 1
+    private final AtomicReferenceArray<Entry> table;
+    // number of sets - 1, the number of sets is a power of two
+    private final int setMask;
+    
+    // counters of cache hits, misses and evictions
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    
+    // immutable key and value; only the hit count changes, and lost updates
+    // to it are harmless
+    private static final class Entry {
+        private final String noun1;
+        private final String noun2;
+        private final int hash;
+        private final long result;
+        private int frequency;
+        
+        private Entry(String noun1, String noun2, int hash, long result) {
+            this.noun1 = noun1;
+            this.noun2 = noun2;
+            this.hash = hash;
+            this.result = result;
+        }
+        
+        // is this the entry of the unordered pair {a, b}?
+        private boolean matches(String a, String b, int h) {
+            return hash == h && ((noun1.equals(a) && noun2.equals(b))
+                                     || (noun1.equals(b) && noun2.equals(a)));
+        }
+    }
+    
+    // constructor takes the maximum number of cached pairs, rounded up to a
+    // power of two
+    public QueryCache(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException();
+        int sets = Integer.highestOneBit(Math.max(1, (capacity + WAYS - 1) / WAYS));
+        if (sets * WAYS < capacity) sets *= 2;
+        table = new AtomicReferenceArray<Entry>(sets * WAYS);
+        setMask = sets - 1;
+    }
+    
+    // hash of an unordered pair, the same for (a, b) and (b, a)
+    private static int hash(String a, String b) {
+        int h1 = a.hashCode();
+        int h2 = b.hashCode();
+        int h = 31 * Math.min(h1, h2) + Math.max(h1, h2);
+        // spreads the bits so the low bits pick the set well
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+    
+    // cached result of the pair, or MISS
+    public long get(String noun1, String noun2) {
+        int h = hash(noun1, noun2);
+        int base = (h & setMask) * WAYS;
+        for (int i = 0; i < WAYS; i++) {
+            Entry e = table.get(base + i);
+            if (e != null && e.matches(noun1, noun2, h)) {
+                if (e.frequency < MAX_FREQUENCY) e.frequency++;
+                hits.increment();
+                return e.result;
+            }
+        }
+        misses.increment();
+        return MISS;
+    }
+    
+    // caches the result of a pair
+    public void put(String noun1, String noun2, long result) {
+        int h = hash(noun1, noun2);
+        int base = (h & setMask) * WAYS;
+        
+        // uses an empty slot if there is one, unless the pair was cached by
+        // another thread in the meantime
+        for (int i = 0; i < WAYS; i++) {
+            Entry e = table.get(base + i);
+            if (e == null) {
+                if (table.compareAndSet(base + i, null,
+                                        new Entry(noun1, noun2, h, result))) {
+                    return;
+                }
+            } else if (e.matches(noun1, noun2, h)) {
+                return;
+            }
+        }
+        
+        // evicts the least frequently hit entry of the set and ages the rest
+        int victim = base;
+        Entry victimEntry = table.get(base);
+        for (int i = 1; i < WAYS; i++) {
+            Entry e = table.get(base + i);
+            if (e != null && (victimEntry == null
+                                  || e.frequency < victimEntry.frequency)) {
+                victim = base + i;
+                victimEntry = e;
+            }
+        }
+        for (int i = 0; i < WAYS; i++) {
+            Entry e = table.get(base + i);
+            if (e != null && e != victimEntry) e.frequency >>= 1;
+        }
+        // if another thread replaced the victim first, its entry is kept
+        if (table.compareAndSet(victim, victimEntry,
+                                new Entry(noun1, noun2, h, result))) {
+            if (victimEntry != null) evictions.increment();
+        }
+    }
+    
+    // removes every entry, keeping the counters
+    public void clear() {
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, null);
+        }
+    }
+    
+    // maximum number of cached pairs
+    public int capacity() {
+        return table.length();
+    }
+    
+    // number of cached pairs, counted by scanning every slot
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < table.length(); i++) {
+            if (table.get(i) != null) size++;
+        }
+        return size;
+    }
+    
+    // number of lookups that found the pair
+    public long hits() {
+        return hits.sum();
+    }
+    
+    // number of lookups that did not find the pair
+    public long misses() {
+        return misses.sum();
+    }
+    
+    // number of entries replaced to make room for another pair
+    public long evictions() {
+        return evictions.sum();
+    }
+    
+    // summary of the counters
+    public String toString() {
+        return "hits = " + hits() + ", misses = " + misses()
+            + ", evictions = " + evictions() + ", size = " + size()
+            + " / " + capacity();
+    }
+}
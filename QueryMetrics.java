@@ -0,0 +1,17 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  Receives the statistics of every query of a
+  *  ShortestCommonAncestor, and of the WordNet built on it, once metrics are
+  *  enabled with setMetrics(). Called on the thread that ran the query, so
+  *  implementations must be thread-safe and quick. HistogramMetrics is the
+  *  standard implementation; others can forward to any metrics library.
+  * 
+  *****************************************************************************/
+
+public interface QueryMetrics {
+    
+    // records one query; the statistics object is reused once this returns,
+    // so anything kept must be copied out of it
+    void record(SearchStats stats);
+}
@@ -0,0 +1,316 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  Answers a stream of WordNet pair queries, one per line,
+  *  for piping large files through. Each input line holds two nouns, or two
+  *  synset ID's in ids mode, separated by whitespace; each output line holds
+  *  the distance and the shortest common ancestor (its synset string, or its
+  *  ID in ids mode) separated by a tab, or "error: " and a reason for a line
+  *  that cannot be answered, so output line i always answers input line i.
+  *  Input is read in batches of lines, which are answered by a shared pool
+  *  of worker threads; a bounded number of batches may be in flight, so a
+  *  fast reader waits for the workers instead of filling the heap. A writer
+  *  thread writes the answers in input order, and flushes whenever it has
+  *  caught up with the workers, so interactive use sees its answers at once.
+  *  Can also listen on a local port, answering each connection the same way,
+  *  with a cap on the number of connections served at once.
+  * 
+  *****************************************************************************/
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class QueryStream {
+    
+    // most lines answered by one task
+    private static final int BATCH_LINES = 1024;
+    // size of the input and output buffers, in chars
+    private static final int BUFFER_SIZE = 1 << 16;
+    // batches in flight per stream for each worker thread
+    private static final int BATCHES_PER_THREAD = 4;
+    // most connections serve() answers at once unless told otherwise
+    private static final int MAX_CONNECTIONS = 64;
+    
+    // marks the end of the batches of a stream for its writer
+    private static final Future<String> END = CompletableFuture.completedFuture(null);
+    
+    // the WordNet queried
+    private final WordNet wordnet;
+    // are the lines synset ID's rather than nouns?
+    private final boolean ids;
+    // the worker threads, shared by every stream
+    private final ExecutorService workers;
+    // most batches of one stream submitted but not yet written
+    private final int maxInFlight;
+    
+    // constructor takes the WordNet to query, whether lines hold synset ID's
+    // and the number of worker threads
+    public QueryStream(WordNet wordnet, boolean ids, int threads) {
+        if (wordnet == null) throw new NullPointerException();
+        if (threads <= 0) throw new IllegalArgumentException();
+        this.wordnet = wordnet;
+        this.ids = ids;
+        this.maxInFlight = BATCHES_PER_THREAD * threads;
+        // daemon threads, so an unclosed stream cannot keep the JVM alive
+        this.workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "QueryStream worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    // answers every line of in, writing the answers to out in order; returns
+    // once the input ends and every answer is written, without closing
+    // either stream
+    public void run(InputStream in, OutputStream out) throws IOException {
+        if (in == null || out == null) throw new NullPointerException();
+        BufferedReader reader = new BufferedReader(
+            new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+        Writer writer = new BufferedWriter(
+            new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        
+        // batches in input order; put() blocks while maxInFlight are pending,
+        // which holds back the reader
+        BlockingQueue<Future<String>> pending =
+            new ArrayBlockingQueue<Future<String>>(maxInFlight);
+        AtomicReference<IOException> failure = new AtomicReference<IOException>();
+        Thread writerThread = new Thread(() -> write(pending, writer, failure),
+                                         "QueryStream writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        
+        boolean finished = false;
+        try {
+            String[] lines = new String[BATCH_LINES];
+            while (failure.get() == null) {
+                // a batch ends when full, or when no more input is buffered,
+                // rather than waiting on a slow producer with lines in hand
+                int numOfLines = 0;
+                String line;
+                while (numOfLines < BATCH_LINES && (line = reader.readLine()) != null) {
+                    lines[numOfLines++] = line;
+                    if (!reader.ready()) break;
+                }
+                if (numOfLines == 0) break;
+                
+                String[] batch = Arrays.copyOf(lines, numOfLines);
+                pending.put(workers.submit(() -> answer(batch)));
+            }
+            pending.put(END);
+            writerThread.join();
+            finished = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } finally {
+            // a failed read, a rejected batch or an interrupt leaves the
+            // writer waiting for an END that never comes
+            if (!finished) stopWriter(writerThread, pending);
+        }
+        if (failure.get() != null) throw failure.get();
+    }
+    
+    // private helper method that stops the writer thread of a stream that
+    // ended early, waits for it, and cancels the batches it did not write
+    private static void stopWriter(Thread writerThread,
+                                   BlockingQueue<Future<String>> pending) {
+        // the interrupt status is put back afterwards, so join() can wait
+        boolean interrupted = Thread.interrupted();
+        writerThread.interrupt();
+        while (true) {
+            try {
+                writerThread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        for (Future<String> batch : pending) {
+            batch.cancel(false);
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+    
+    // private helper method run by the writer thread of a stream: writes
+    // the answers of each batch as it completes, in order. After a failed
+    // write it keeps taking batches, so the reader is never left blocked,
+    // and records the failure for the reader to stop at
+    private static void write(BlockingQueue<Future<String>> pending, Writer writer,
+                              AtomicReference<IOException> failure) {
+        try {
+            Future<String> batch;
+            while ((batch = pending.take()) != END) {
+                if (failure.get() != null) continue;
+                try {
+                    writer.write(batch.get());
+                    // caught up with the workers, so nothing is held back
+                    if (pending.isEmpty()) writer.flush();
+                } catch (IOException e) {
+                    failure.set(e);
+                } catch (ExecutionException e) {
+                    failure.set(new IOException(e.getCause()));
+                }
+            }
+            if (failure.get() == null) writer.flush();
+        } catch (IOException e) {
+            failure.set(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    // private helper method that answers a batch of lines, one output line
+    // each
+    private String answer(String[] lines) {
+        StringBuilder answers = new StringBuilder(32 * lines.length);
+        for (String line : lines) {
+            answer(line, answers);
+            answers.append('\n');
+        }
+        return answers.toString();
+    }
+    
+    // private helper method that appends the answer to one line
+    private void answer(String line, StringBuilder answers) {
+        String[] fields = line.trim().split("\\s+");
+        if (fields.length != 2) {
+            answers.append("error: expected two fields");
+            return;
+        }
+        
+        if (ids) {
+            int v;
+            int w;
+            try {
+                v = Integer.parseInt(fields[0]);
+                w = Integer.parseInt(fields[1]);
+            } catch (NumberFormatException e) {
+                answers.append("error: not a synset ID");
+                return;
+            }
+            try {
+                AncestorResult result = wordnet.sca().query(v, w);
+                answers.append(result.distance()).append('\t')
+                    .append(result.ancestor());
+            } catch (IndexOutOfBoundsException e) {
+                answers.append("error: synset ID out of range");
+            }
+            return;
+        }
+        
+        // nouns are only ever added, so a noun found here is still one when
+        // queried; any other failure is not the line's fault and fails the
+        // stream
+        for (String noun : fields) {
+            if (!wordnet.isNoun(noun)) {
+                answers.append("error: ").append(noun).append(" is not a WordNet noun");
+                return;
+            }
+        }
+        AncestorResult result = wordnet.query(fields[0], fields[1]);
+        answers.append(result.distance()).append('\t').append(result.synset());
+    }
+    
+    // listens on the given port of the loopback address, answering up to
+    // MAX_CONNECTIONS connections at once
+    public void serve(int port) throws IOException {
+        serve(port, MAX_CONNECTIONS);
+    }
+    
+    // listens on the given port of the loopback address, answering each
+    // connection as a stream until the client closes its side, on a pool of
+    // maxConnections threads. Once that many are open, no more are accepted
+    // until one closes, so further clients wait in the listen backlog; never
+    // returns unless the port cannot be opened
+    public void serve(int port, int maxConnections) throws IOException {
+        if (maxConnections <= 0) throw new IllegalArgumentException();
+        Semaphore slots = new Semaphore(maxConnections);
+        ExecutorService connections = Executors.newFixedThreadPool(maxConnections, task -> {
+            Thread thread = new Thread(task, "QueryStream connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (ServerSocket server = new ServerSocket(port, 50,
+                                                    InetAddress.getLoopbackAddress())) {
+            while (true) {
+                slots.acquireUninterruptibly();
+                Socket client;
+                try {
+                    client = server.accept();
+                } catch (IOException e) {
+                    slots.release();
+                    throw e;
+                }
+                connections.execute(() -> {
+                    try (Socket socket = client) {
+                        run(socket.getInputStream(), socket.getOutputStream());
+                    } catch (IOException e) {
+                        System.err.println("QueryStream: " + e.getMessage());
+                    } finally {
+                        slots.release();
+                    }
+                });
+            }
+        } finally {
+            connections.shutdown();
+        }
+    }
+    
+    // stops the worker threads once the batches submitted are answered
+    public void shutdown() {
+        workers.shutdown();
+    }
+    
+    // answers standard input on standard output, or connections to a local
+    // port. Takes the two input files, then any of the options "ids" (lines
+    // hold synset ID's), "index" (build the ancestor labels), threads=N,
+    // cache=N (cache the results of N noun pairs), port=N and connections=N
+    // (most connections answered at once)
+    public static void main(String[] args) throws IOException {
+        boolean ids = false;
+        boolean useIndex = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int cache = 0;
+        int port = -1;
+        int connections = MAX_CONNECTIONS;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("ids")) ids = true;
+            else if (args[i].equals("index")) useIndex = true;
+            else if (args[i].startsWith("threads=")) threads = Integer.parseInt(args[i].substring(8));
+            else if (args[i].startsWith("cache=")) cache = Integer.parseInt(args[i].substring(6));
+            else if (args[i].startsWith("port=")) port = Integer.parseInt(args[i].substring(5));
+            else if (args[i].startsWith("connections=")) connections = Integer.parseInt(args[i].substring(12));
+            else throw new IllegalArgumentException("unknown option " + args[i]);
+        }
+        
+        WordNet wordnet = new WordNet(args[0], args[1], useIndex);
+        if (cache > 0) wordnet.enableCache(cache);
+        QueryStream stream = new QueryStream(wordnet, ids, threads);
+        if (port >= 0) {
+            stream.serve(port, connections);
+        } else {
+            stream.run(System.in, System.out);
+            stream.shutdown();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  Lock-free pool of reusable scratch objects, such as the
+  *  search workspaces of ShortestCommonAncestor. A thread borrows an object
+  *  for the duration of one query, so it is never shared while in use, and
+  *  returns it afterwards. Unlike a ThreadLocal, the number of objects is
+  *  bounded by the number of queries running at once rather than the number
+  *  of threads, which keeps memory in check with many short-lived or
+  *  virtual threads. Borrowing and returning do not allocate.
+  * 
+  *****************************************************************************/
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+public class ScratchPool<T> {
+    
+    // slots holding idle objects, null when empty
+    private final AtomicReferenceArray<T> slots;
+    // slots.length() - 1, the number of slots is a power of two
+    private final int mask;
+    // creates a new object when every slot is empty
+    private final Supplier<T> factory;
+    
+    // constructor takes the function creating new scratch objects
+    public ScratchPool(Supplier<T> factory) {
+        if (factory == null) throw new NullPointerException();
+        this.factory = factory;
+        
+        // a few slots per processor, so concurrent threads rarely collide
+        int size = Integer.highestOneBit(
+            Math.max(1, 2 * Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        slots = new AtomicReferenceArray<T>(size);
+        mask = size - 1;
+    }
+    
+    // takes an idle object, or creates one if none is available
+    public T borrow() {
+        int start = (int) Thread.currentThread().getId() & mask;
+        for (int i = 0; i <= mask; i++) {
+            int slot = (start + i) & mask;
+            if (slots.get(slot) != null) {
+                T item = slots.getAndSet(slot, null);
+                if (item != null) return item;
+            }
+        }
+        return factory.get();
+    }
+    
+    // returns an object to the pool, dropping it if every slot is full
+    public void release(T item) {
+        int start = (int) Thread.currentThread().getId() & mask;
+        for (int i = 0; i <= mask; i++) {
+            int slot = (start + i) & mask;
+            if (slots.get(slot) == null && slots.compareAndSet(slot, null, item)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  Bounds a shortest common ancestor search by a deadline, a
+  *  number of vertices it may reach, or both, and lets it be cancelled. The
+  *  search checks its limit between levels and, once the limit is
+  *  exceeded, stops and answers with the best upper bound it has instead of
+  *  the exact result. The deadline runs from when the limit is created, so
+  *  time spent waiting for an executor counts against it. A limit can be
+  *  shared by queries that should stop together.
+  * 
+  *****************************************************************************/
+
+import java.util.concurrent.TimeUnit;
+
+public class SearchLimit {
+    
+    // System.nanoTime() value at which searches stop, if hasDeadline
+    private final long deadline;
+    private final boolean hasDeadline;
+    // most vertices a search may reach from both sides together
+    private final long maxVertices;
+    // set once the queries using this limit are no longer wanted
+    private volatile boolean cancelled;
+    
+    // constructor takes the time searches may take from now, in the given
+    // unit, and the most vertices each may reach; Long.MAX_VALUE for
+    // either means no limit, and so does any timeout too long to count in
+    // nanoseconds, which toNanos() saturates to Long.MAX_VALUE
+    public SearchLimit(long timeout, TimeUnit unit, long maxVertices) {
+        if (unit == null) throw new NullPointerException();
+        if (timeout < 0 || maxVertices < 0) throw new IllegalArgumentException();
+        long nanos = unit.toNanos(timeout);
+        hasDeadline = nanos != Long.MAX_VALUE;
+        // the sum may wrap around, which the difference in exceeded() allows
+        // for, as System.nanoTime() values must only be compared by difference
+        deadline = hasDeadline ? System.nanoTime() + nanos : 0;
+        this.maxVertices = maxVertices;
+    }
+    
+    // a limit that only stops searches once the time has passed
+    public static SearchLimit within(long timeout, TimeUnit unit) {
+        return new SearchLimit(timeout, unit, Long.MAX_VALUE);
+    }
+    
+    // a limit that only stops searches once they reach that many vertices
+    public static SearchLimit vertices(long maxVertices) {
+        return new SearchLimit(Long.MAX_VALUE, TimeUnit.NANOSECONDS, maxVertices);
+    }
+    
+    // a limit that only stops searches when cancelled
+    public static SearchLimit unlimited() {
+        return new SearchLimit(Long.MAX_VALUE, TimeUnit.NANOSECONDS, Long.MAX_VALUE);
+    }
+    
+    // stops every search using this limit at its next check
+    public void cancel() {
+        cancelled = true;
+    }
+    
+    // was cancel() called?
+    public boolean isCancelled() {
+        return cancelled;
+    }
+    
+    // should a search that has reached the given number of vertices stop?
+    // Reads the clock only if there is a deadline
+    boolean exceeded(long vertices) {
+        return cancelled || vertices > maxVertices
+            || (hasDeadline && System.nanoTime() - deadline >= 0);
+    }
+}
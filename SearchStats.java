@@ -0,0 +1,179 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  Statistics of one shortest common ancestor query, handed
+  *  to a QueryMetrics: for each side of the search, the vertices it reached,
+  *  the edges it scanned, the levels it expanded, the frontier vertices it
+  *  pruned instead of expanding and the time spent expanding them, plus the
+  *  time spent looking up nouns and the time of the whole query. Queries
+  *  answered by the tree or the ancestor index do no search, so their
+  *  sides are all zero. Objects are reused between queries.
+  * 
+  *****************************************************************************/
+
+public class SearchStats {
+    
+    // vertices reached, edges scanned, levels expanded, frontier vertices
+    // expanded and pruned, and nanoseconds spent by the search from the
+    // first sources
+    private int vVertices;
+    private long vEdges;
+    private int vLevels;
+    private int vExpanded;
+    private int vPruned;
+    private long vNanos;
+    
+    // the same for the search from the second sources
+    private int wVertices;
+    private long wEdges;
+    private int wLevels;
+    private int wExpanded;
+    private int wPruned;
+    private long wNanos;
+    
+    // nanoseconds spent finding the synsets of nouns, 0 for vertex queries
+    private long lookupNanos;
+    // nanoseconds of the whole query, including the lookup
+    private long totalNanos;
+    // was the query answered by the tree or the ancestor index, without a
+    // search?
+    private boolean indexed;
+    // was the search stopped by its limit before it finished?
+    private boolean stopped;
+    
+    // sets the statistics of the search from the first sources
+    void setV(int vertices, long edges, int levels, int expanded, int pruned,
+              long nanos) {
+        vVertices = vertices;
+        vEdges = edges;
+        vLevels = levels;
+        vExpanded = expanded;
+        vPruned = pruned;
+        vNanos = nanos;
+    }
+    
+    // sets the statistics of the search from the second sources
+    void setW(int vertices, long edges, int levels, int expanded, int pruned,
+              long nanos) {
+        wVertices = vertices;
+        wEdges = edges;
+        wLevels = levels;
+        wExpanded = expanded;
+        wPruned = pruned;
+        wNanos = nanos;
+    }
+    
+    // sets whether the search was stopped by its limit
+    void setStopped(boolean stopped) {
+        this.stopped = stopped;
+    }
+    
+    // sets the times of the query and how it was answered
+    void setQuery(long lookupNanos, long totalNanos, boolean indexed) {
+        this.lookupNanos = lookupNanos;
+        this.totalNanos = totalNanos;
+        this.indexed = indexed;
+    }
+    
+    // vertices reached from the first sources, including the sources
+    public int vVertices() {
+        return vVertices;
+    }
+    
+    // edges scanned by the search from the first sources
+    public long vEdges() {
+        return vEdges;
+    }
+    
+    // levels expanded by the search from the first sources
+    public int vLevels() {
+        return vLevels;
+    }
+    
+    // reached vertices the search from the first sources expanded
+    public int vExpanded() {
+        return vExpanded;
+    }
+    
+    // reached vertices the search from the first sources did not expand,
+    // because no ancestor through them could beat the best one found
+    public int vPruned() {
+        return vPruned;
+    }
+    
+    // nanoseconds spent expanding the search from the first sources
+    public long vNanos() {
+        return vNanos;
+    }
+    
+    // vertices reached from the second sources, including the sources
+    public int wVertices() {
+        return wVertices;
+    }
+    
+    // edges scanned by the search from the second sources
+    public long wEdges() {
+        return wEdges;
+    }
+    
+    // levels expanded by the search from the second sources
+    public int wLevels() {
+        return wLevels;
+    }
+    
+    // reached vertices the search from the second sources expanded
+    public int wExpanded() {
+        return wExpanded;
+    }
+    
+    // reached vertices the search from the second sources did not expand
+    public int wPruned() {
+        return wPruned;
+    }
+    
+    // nanoseconds spent expanding the search from the second sources
+    public long wNanos() {
+        return wNanos;
+    }
+    
+    // nanoseconds spent finding the synsets of nouns
+    public long lookupNanos() {
+        return lookupNanos;
+    }
+    
+    // nanoseconds of the whole query
+    public long totalNanos() {
+        return totalNanos;
+    }
+    
+    // was the query answered by the tree or the ancestor index, without a
+    // search?
+    public boolean indexed() {
+        return indexed;
+    }
+    
+    // was the search stopped by its limit, so that the query was answered
+    // with an upper bound?
+    public boolean stopped() {
+        return stopped;
+    }
+    
+    // share of the frontier vertices both sides took up that were pruned
+    // instead of expanded, 0 if there were none
+    public double pruningRatio() {
+        int frontier = vExpanded + vPruned + wExpanded + wPruned;
+        if (frontier == 0) return 0;
+        return (double) (vPruned + wPruned) / frontier;
+    }
+    
+    // string representation of the statistics
+    public String toString() {
+        return "v: " + vVertices + " vertices, " + vEdges + " edges, "
+            + vLevels + " levels, " + vPruned + " pruned, " + vNanos
+            + " ns; w: " + wVertices + " vertices, " + wEdges + " edges, "
+            + wLevels + " levels, " + wPruned + " pruned, " + wNanos
+            + " ns; lookup " + lookupNanos + " ns, total " + totalNanos
+            + " ns" + (indexed ? " (indexed)" : "")
+            + (stopped ? " (stopped)" : "");
+    }
+}
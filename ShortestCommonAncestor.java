@@ -2,7 +2,10 @@
   *  Name:    Greg Umali
   * 
   *  Description:  Computes the shortest common ancestor between two vertices
-  *  in a Digraph objects.
+  *  in a Digraph objects. Queries do not modify the object, and may be run
+  *  from many threads at once. Queries can be bounded by a SearchLimit and
+  *  run asynchronously on an executor, answering with the exact result or,
+  *  if the limit stops the search, a flagged upper bound.
   * 
   *****************************************************************************/
 
@@ -10,55 +13,580 @@ import edu.princeton.cs.algs4.Digraph;
 import edu.princeton.cs.algs4.StdIn;
 import edu.princeton.cs.algs4.StdOut;
 import edu.princeton.cs.algs4.In;
-import edu.princeton.cs.algs4.DirectedCycle;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 public class ShortestCommonAncestor {
     
+    // number of queries of a batch handled by one task; large enough that
+    // each task runs many full bit-parallel searches
+    private static final int BATCH_CHUNK = 64 * BitParallelBFS.LANES;
+    
     // represents digraph of synsets
-    private final Digraph graph;
+    private final CompactDigraph graph;
+    
+    // search workspaces, each borrowed by one query at a time, so queries
+    // reuse the same arrays instead of allocating per call
+    private final ScratchPool<DeluxeBFS> workspace;
+    
+    // bit-parallel search workspaces, each borrowed by one batch task at a
+    // time; none are created until the first batch
+    private final ScratchPool<BitParallelBFS> batchWorkspace;
+    
+    // precomputed ancestor labels, null when queries use BFS
+    private final AncestorIndex index;
+    
+    // constant-time answers for queries within the tree-shaped part of the
+    // graph, tried before the labels or the BFS
+    private final TreeLCA tree;
+    
+    // topological order and depth of every vertex, found while checking
+    // that the graph is a rooted DAG
+    private final TopologicalOrder topological;
+    
+    // reverse of the graph, from each vertex to its hyponyms; built on
+    // first use
+    private volatile CompactDigraph hyponyms;
+    
+    // receives the statistics of every query, null when disabled
+    private volatile QueryMetrics metrics;
+    
+    // runs asynchronous queries, null for the default executor
+    private volatile Executor executor;
+    
+    // number of bounded queries stopped by their deadline or vertex budget
+    private final LongAdder timeouts = new LongAdder();
+    
+    // executor of asynchronous queries unless another is set, created on
+    // first use: a virtual thread per query on JVMs that have them, looked
+    // up by reflection since they are newer than the Java this targets,
+    // and a cached pool of daemon threads otherwise
+    private static final class DefaultExecutor {
+        private static final Executor INSTANCE = create();
+        
+        private static Executor create() {
+            try {
+                Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) virtual.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                return Executors.newCachedThreadPool(task -> {
+                    Thread thread = new Thread(task, "ShortestCommonAncestor query");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+    }
 
     // constructor takes a rooted DAG as argument
     public ShortestCommonAncestor(Digraph G) {
-        // check if digraph is null
+        this(G, false);
+    }
+    
+    // constructor takes a rooted DAG and whether to precompute ancestor
+    // labels, which trades memory and build time for faster queries
+    public ShortestCommonAncestor(Digraph G, boolean useIndex) {
+        // the algs4 digraph can still be changed by the caller, so the
+        // searches run on an immutable compact copy, which also checks that
+        // the digraph is not null
+        this(new CompactDigraph(G), useIndex);
+    }
+    
+    // constructor takes a rooted DAG that is already immutable, which is
+    // searched directly instead of being copied
+    public ShortestCommonAncestor(CompactDigraph G, boolean useIndex) {
         if (G == null) throw new NullPointerException();
         
-        // check if there is a cycle in the digraph
-        DirectedCycle rootedDAG = new DirectedCycle(G);
-        if (rootedDAG.hasCycle()) {
+        // one iterative pass checks that the digraph is acyclic and has a
+        // single root, orders the vertices for the index, and finds the
+        // depths searches prune by
+        topological = new TopologicalOrder(G);
+        graph = G;
+        workspace = new ScratchPool<DeluxeBFS>(
+            () -> new DeluxeBFS(graph, topological));
+        batchWorkspace = new ScratchPool<BitParallelBFS>(
+            () -> new BitParallelBFS(graph, topological));
+        
+        if (useIndex) index = new AncestorIndex(graph, topological);
+        else index = null;
+        tree = new TreeLCA(graph, topological);
+    }
+    
+    // constructor takes a graph and index read back from a snapshot; index
+    // may be null
+    ShortestCommonAncestor(CompactDigraph G, AncestorIndex index) {
+        this(G, new TopologicalOrder(G), index);
+    }
+    
+    // constructor takes a graph with its topological order and index, as
+    // updated from an earlier object; index may be null
+    ShortestCommonAncestor(CompactDigraph G, TopologicalOrder topological,
+                           AncestorIndex index) {
+        if (G == null || topological == null) throw new NullPointerException();
+        if (topological.V() != G.V()
+                || (index != null && index.V() != G.V())) {
             throw new IllegalArgumentException();
         }
+        this.topological = topological;
+        graph = G;
+        workspace = new ScratchPool<DeluxeBFS>(
+            () -> new DeluxeBFS(graph, topological));
+        batchWorkspace = new ScratchPool<BitParallelBFS>(
+            () -> new BitParallelBFS(graph, topological));
+        this.index = index;
+        tree = new TreeLCA(graph, topological);
+    }
+    
+    // the ancestor labels used by queries, or null if disabled
+    public AncestorIndex index() {
+        return index;
+    }
+    
+    // the tree-shaped part of the graph used by queries
+    public TreeLCA tree() {
+        return tree;
+    }
+    
+    // sends the statistics of every later query to metrics, or stops
+    // collecting them if metrics is null; safe to call while queries run
+    public void setMetrics(QueryMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    // the metrics receiving query statistics, or null if disabled
+    public QueryMetrics metrics() {
+        return metrics;
+    }
+    
+    // runs later asynchronous queries on the given executor, or on the
+    // default one if executor is null
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+    
+    // number of bounded queries stopped by their deadline or vertex budget,
+    // not counting cancelled ones
+    public long timeouts() {
+        return timeouts.sum();
+    }
+    
+    // the digraph searched by this object
+    CompactDigraph graph() {
+        return graph;
+    }
+    
+    // topological order and depth of every vertex
+    TopologicalOrder topologicalOrder() {
+        return topological;
+    }
+    
+    // private helper method to check if synset ID is value
+    private void checkInBounds(int v) {
+        if (v < 0 || v >= graph.V()) {
+            throw new IndexOutOfBoundsException();
+        }
         
-        // check if digraph is rooted
-        int numOfV = G.V();
+    }
+
+    
+    // packs a distance and ancestor into one result, so searches can return
+    // both without allocating
+    static long result(int dist, int ancestor) {
+        return ((long) dist << 32) | (ancestor & 0xFFFFFFFFL);
+    }
+    
+    // distance of a packed result
+    static int resultDist(long result) {
+        return (int) (result >>> 32);
+    }
+    
+    // ancestor of a packed result
+    static int resultAnc(long result) {
+        return (int) result;
+    }
+    
+    // private helper method that finds the shortest common ancestor of v and
+    // w, in the tree if both are in it, then in the ancestor labels if
+    // available and by BFS otherwise
+    private long search(int v, int w) {
+        QueryMetrics current = metrics;
+        long start = (current == null) ? 0 : System.nanoTime();
+        long result = tree.query(v, w);
+        if (result == TreeLCA.MISS && index != null) result = index.query(v, w);
+        if (result != TreeLCA.MISS) {
+            if (current != null) recordIndexed(current, start, 0);
+            return result;
+        }
         
-        if (numOfV == 0) throw new IllegalArgumentException();
+        // uses helper class to calculate shortest ancestor and length
+        // to ancestor
+        DeluxeBFS bfs = workspace.borrow();
+        try {
+            bfs.setTimed(current != null);
+            bfs.search(v, w);
+            if (current != null) record(current, bfs, start, 0);
+            return result(bfs.getDist(), bfs.getAnc());
+        } finally {
+            workspace.release(bfs);
+        }
+    }
+    
+    // private helper method that finds the shortest common ancestor of two
+    // subsets that were already checked
+    private long search(Iterable<Integer> subsetA, Iterable<Integer> subsetB) {
+        QueryMetrics current = metrics;
+        long start = (current == null) ? 0 : System.nanoTime();
+        long result = tree.query(subsetA, subsetB);
+        if (result == TreeLCA.MISS && index != null) {
+            result = index.query(subsetA, subsetB);
+        }
+        if (result != TreeLCA.MISS) {
+            if (current != null) recordIndexed(current, start, 0);
+            return result;
+        }
         
-        int numOfRoots = 0;
+        DeluxeBFS bfs = workspace.borrow();
+        try {
+            bfs.setTimed(current != null);
+            bfs.search(subsetA, subsetB);
+            if (current != null) record(current, bfs, start, 0);
+            return result(bfs.getDist(), bfs.getAnc());
+        } finally {
+            workspace.release(bfs);
+        }
+    }
+    
+    // shortest common ancestor of vertex arrays that are already known to be
+    // non-empty and in bounds, such as WordNet's synset arrays
+    long searchValidated(int[] subsetA, int[] subsetB) {
+        return searchValidated(subsetA, subsetB, 0);
+    }
+    
+    // the same, for a query that already spent lookupNanos finding the
+    // arrays, which is added to its statistics
+    long searchValidated(int[] subsetA, int[] subsetB, long lookupNanos) {
+        QueryMetrics current = metrics;
+        long start = (current == null) ? 0 : System.nanoTime();
+        long result = tree.query(subsetA, subsetB);
+        if (result == TreeLCA.MISS && index != null) {
+            result = index.query(subsetA, subsetB);
+        }
+        if (result != TreeLCA.MISS) {
+            if (current != null) recordIndexed(current, start, lookupNanos);
+            return result;
+        }
         
-        for (int i = 0; i < numOfV; i++) {
-            // counts number of roots
-            if (G.outdegree(i) == 0) {
-                numOfRoots++;
+        DeluxeBFS bfs = workspace.borrow();
+        try {
+            bfs.setTimed(current != null);
+            bfs.search(subsetA, subsetB);
+            if (current != null) record(current, bfs, start, lookupNanos);
+            return result(bfs.getDist(), bfs.getAnc());
+        } finally {
+            workspace.release(bfs);
+        }
+    }
+    
+    // shortest common ancestor of vertex arrays that are already known to be
+    // non-empty and in bounds, found within the limit, which may be null.
+    // Queries the tree or the labels answer are always exact; a search the
+    // limit stops answers with the best upper bound it found
+    AncestorResult searchValidated(int[] subsetA, int[] subsetB, SearchLimit limit,
+                                   long lookupNanos) {
+        QueryMetrics current = metrics;
+        long start = (current == null) ? 0 : System.nanoTime();
+        long result = tree.query(subsetA, subsetB);
+        if (result == TreeLCA.MISS && index != null) {
+            result = index.query(subsetA, subsetB);
+        }
+        if (result != TreeLCA.MISS) {
+            if (current != null) recordIndexed(current, start, lookupNanos);
+            return new AncestorResult(resultDist(result), resultAnc(result));
+        }
+        
+        DeluxeBFS bfs = workspace.borrow();
+        try {
+            bfs.setTimed(current != null);
+            bfs.setLimit(limit);
+            bfs.search(subsetA, subsetB);
+            boolean exact = bfs.isExact();
+            if (!exact && !limit.isCancelled()) timeouts.increment();
+            if (current != null) record(current, bfs, start, lookupNanos);
+            return new AncestorResult(bfs.getDist(), bfs.getAnc(), null, null, exact);
+        } finally {
+            // the workspace goes back to the pool, so it must not keep the
+            // limit for the next query
+            bfs.setLimit(null);
+            workspace.release(bfs);
+        }
+    }
+    
+    // runs a query on the executor, or the default one if null, and
+    // returns its future; cancelling the future cancels the limit, which
+    // stops the search at its next check
+    static <T> CompletableFuture<T> submit(Supplier<T> query, SearchLimit limit,
+                                           Executor executor) {
+        Executor runner = (executor == null) ? DefaultExecutor.INSTANCE : executor;
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(query, runner);
+        future.whenComplete((result, failure) -> {
+            if (future.isCancelled()) limit.cancel();
+        });
+        return future;
+    }
+    
+    // the queries of a batch, so pairs and subsets share one search loop
+    private interface BatchQueries {
+        // result of query i found without a search, or TreeLCA.MISS
+        long direct(int i);
+        
+        // adds the sources of query i to a lane of the search
+        void seed(BitParallelBFS bfs, int lane, int i);
+        
+        // a source of the first side of query i, by which queries are
+        // grouped
+        int key(int i);
+    }
+    
+    // private helper method that finds the results of n queries, packed.
+    // Queries the tree or the ancestor labels answer are answered one by
+    // one; the rest are searched 64 at a time by a bit-parallel BFS, which
+    // pays off most when the queries of a search share sources, so each
+    // chunk is sorted by a source of every query first. Chunks of the batch
+    // run in parallel on the common fork-join pool. Batches are not
+    // recorded by the metrics
+    private long[] batch(int n, BatchQueries queries) {
+        long[] results = new long[n];
+        int chunks = (n + BATCH_CHUNK - 1) / BATCH_CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            // the queries left for the search, as key << 32 | query
+            long[] searched = new long[BATCH_CHUNK];
+            int numOfSearched = 0;
+            int end = Math.min(n, (chunk + 1) * BATCH_CHUNK);
+            for (int i = chunk * BATCH_CHUNK; i < end; i++) {
+                long result = queries.direct(i);
+                if (result != TreeLCA.MISS) results[i] = result;
+                else searched[numOfSearched++] = ((long) queries.key(i) << 32) | i;
             }
-            // if more than one root, throw exception
-            if (numOfRoots > 1) {
-                throw new IllegalArgumentException();
-            }            
+            Arrays.sort(searched, 0, numOfSearched);
             
+            BitParallelBFS bfs = batchWorkspace.borrow();
+            try {
+                int[] pending = new int[BitParallelBFS.LANES];
+                long[] laneResults = new long[BitParallelBFS.LANES];
+                int lanes = 0;
+                for (int j = 0; j < numOfSearched; j++) {
+                    int i = (int) searched[j];
+                    queries.seed(bfs, lanes, i);
+                    pending[lanes++] = i;
+                    if (lanes == BitParallelBFS.LANES) {
+                        bfs.search(lanes, laneResults);
+                        for (int lane = 0; lane < lanes; lane++) {
+                            results[pending[lane]] = laneResults[lane];
+                        }
+                        lanes = 0;
+                    }
+                }
+                // searches the last, partly filled batch
+                if (lanes > 0) {
+                    bfs.search(lanes, laneResults);
+                    for (int lane = 0; lane < lanes; lane++) {
+                        results[pending[lane]] = laneResults[lane];
+                    }
+                }
+            } finally {
+                batchWorkspace.release(bfs);
+            }
+        });
+        return results;
+    }
+    
+    // results of many queries between vertex arrays that are already known
+    // to be non-empty and in bounds, subsetsA[i] and subsetsB[i], packed
+    long[] batchValidated(int[][] subsetsA, int[][] subsetsB) {
+        return batch(subsetsA.length, new BatchQueries() {
+            public long direct(int i) {
+                long result = tree.query(subsetsA[i], subsetsB[i]);
+                if (result == TreeLCA.MISS && index != null) {
+                    result = index.query(subsetsA[i], subsetsB[i]);
+                }
+                return result;
+            }
+            
+            public void seed(BitParallelBFS bfs, int lane, int i) {
+                for (int v : subsetsA[i]) bfs.addV(lane, v);
+                for (int w : subsetsB[i]) bfs.addW(lane, w);
+            }
+            
+            public int key(int i) {
+                return subsetsA[i][0];
+            }
+        });
+    }
+    
+    // lengths and shortest common ancestors of many pairs of vertices, v[i]
+    // and w[i], written to lengths[i] and ancestors[i]; either output may be
+    // null. Much faster per pair than one query at a time, since the pairs
+    // that need a search share the edges they scan
+    public void batch(int[] v, int[] w, int[] lengths, int[] ancestors) {
+        if (v == null || w == null) throw new NullPointerException();
+        int n = v.length;
+        if (w.length != n || (lengths != null && lengths.length < n)
+                || (ancestors != null && ancestors.length < n)) {
+            throw new IllegalArgumentException();
+        }
+        for (int i = 0; i < n; i++) {
+            checkInBounds(v[i]);
+            checkInBounds(w[i]);
+        }
+        
+        long[] results = batch(n, new BatchQueries() {
+            public long direct(int i) {
+                long result = tree.query(v[i], w[i]);
+                if (result == TreeLCA.MISS && index != null) {
+                    result = index.query(v[i], w[i]);
+                }
+                return result;
+            }
+            
+            public void seed(BitParallelBFS bfs, int lane, int i) {
+                bfs.addV(lane, v[i]);
+                bfs.addW(lane, w[i]);
+            }
+            
+            public int key(int i) {
+                return v[i];
+            }
+        });
+        for (int i = 0; i < n; i++) {
+            if (lengths != null) lengths[i] = resultDist(results[i]);
+            if (ancestors != null) ancestors[i] = resultAnc(results[i]);
         }
-   
-      
-        graph = new Digraph(G);
     }
     
-    // private helper method to check if synset ID is value
-    private void checkInBounds(int v) {
-        if (v < 0 || v >= graph.V()) {
-            throw new IndexOutOfBoundsException();
+    // private helper method that hands the statistics of a BFS query that
+    // started at start to the metrics; allocates nothing
+    private static void record(QueryMetrics metrics, DeluxeBFS bfs, long start,
+                               long lookupNanos) {
+        SearchStats stats = bfs.stats();
+        stats.setQuery(lookupNanos, System.nanoTime() - start + lookupNanos,
+                       false);
+        metrics.record(stats);
+    }
+    
+    // private helper method that hands the statistics of a query answered
+    // by the tree or the ancestor labels, without a search, to the metrics
+    private static void recordIndexed(QueryMetrics metrics, long start,
+                                      long lookupNanos) {
+        SearchStats stats = new SearchStats();
+        stats.setQuery(lookupNanos, System.nanoTime() - start + lookupNanos,
+                       true);
+        metrics.record(stats);
+    }
+    
+    // every ancestor of an array of vertices that is already known to be
+    // non-empty and in bounds, with its distance, packed as
+    // (vertex << 32) | distance and sorted by vertex
+    long[] ancestorsValidated(int[] sources) {
+        DeluxeBFS bfs = workspace.borrow();
+        try {
+            return bfs.ancestors(sources);
+        } finally {
+            workspace.release(bfs);
         }
+    }
+    
+    // private helper method that returns the reverse graph, building it once
+    private CompactDigraph hyponyms() {
+        CompactDigraph reverse = hyponyms;
+        if (reverse == null) {
+            synchronized (this) {
+                reverse = hyponyms;
+                if (reverse == null) {
+                    reverse = graph.reverse();
+                    hyponyms = reverse;
+                }
+            }
+        }
+        return reverse;
+    }
+    
+    // visits vertices in order of their shortest ancestral path length to
+    // an array of vertices that is already known to be non-empty and in
+    // bounds, until the visitor returns false
+    void nearestValidated(int[] sources, DeluxeBFS.Visitor visitor) {
+        CompactDigraph reverse = hyponyms();
+        DeluxeBFS bfs = workspace.borrow();
+        try {
+            bfs.nearest(sources, reverse, visitor);
+        } finally {
+            workspace.release(bfs);
+        }
+    }
+    
+    // shortest common ancestor of two sorted ancestor lists returned by
+    // ancestorsValidated(), found by walking both lists in step
+    static long join(long[] a, long[] b) {
+        int minDist = Integer.MAX_VALUE;
+        int ancestor = -1;
         
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            int x = (int) (a[i] >>> 32);
+            int y = (int) (b[j] >>> 32);
+            if (x < y) i++;
+            else if (x > y) j++;
+            else {
+                int dist = (int) a[i] + (int) b[j];
+                if (dist < minDist) {
+                    minDist = dist;
+                    ancestor = x;
+                }
+                i++;
+                j++;
+            }
+        }
+        return result(minDist, ancestor);
+    }
+    
+    // Wu-Palmer similarity of a packed result: twice the depth of the
+    // ancestor over the sum of the depths of the two vertices through it.
+    // Depths count vertices, so the root has depth 1, and the ancestor's is
+    // its longest path to the root, as in the usual WordNet definition
+    double wuPalmer(long result) {
+        int depth = topological.maxDepth(resultAnc(result)) + 1;
+        return 2.0 * depth / (resultDist(result) + 2.0 * depth);
+    }
+    
+    // Leacock-Chodorow similarity of a packed result: -log(p / 2D), where p
+    // is the number of vertices on the shortest ancestral path and D the
+    // number of vertices on the longest path to the root
+    double leacockChodorow(long result) {
+        return -Math.log((resultDist(result) + 1)
+                             / (2.0 * (topological.height() + 1)));
+    }
+    
+    // Wu-Palmer similarity of vertices v and w, from a single search and the
+    // depths found when the graph was checked
+    public double wuPalmer(int v, int w) {
+        checkInBounds(v);
+        checkInBounds(w);
+        return wuPalmer(search(v, w));
+    }
+    
+    // Leacock-Chodorow similarity of vertices v and w, from a single search
+    public double leacockChodorow(int v, int w) {
+        checkInBounds(v);
+        checkInBounds(w);
+        return leacockChodorow(search(v, w));
     }
-
     
     // length of shortest ancestral path between v and w
     public int length(int v, int w) {
@@ -66,11 +594,7 @@ public class ShortestCommonAncestor {
         checkInBounds(v);
         checkInBounds(w);
         
-        // uses helper class to calculate shortest ancestor and length
-        // to ancestor
-        DeluxeBFS length = new DeluxeBFS(graph, v, w);
-        
-        return length.getDist();
+        return resultDist(search(v, w));
         
     }
     
@@ -80,62 +604,154 @@ public class ShortestCommonAncestor {
         checkInBounds(v);
         checkInBounds(w);
         
-        // uses helper class to calculate shortest ancestor and length
-        // to ancestor
-        DeluxeBFS anc = new DeluxeBFS(graph, v, w);
-        return anc.getAnc();
+        return resultAnc(search(v, w));
         
     }
-
-   // length of shortest ancestral path of vertex subsets A and B
-    public int length(Iterable<Integer> subsetA, Iterable<Integer> subsetB) {
-        if (subsetA == null || subsetB == null) throw new NullPointerException();
- 
-        // check if subsetA contains a vertex that is out of bounds
-        int counterA = 0;
-        for (int i : subsetA) {
-            checkInBounds(i);
-            counterA++;
+    
+    // length and shortest common ancestor of vertices v and w, found by a
+    // single search
+    public AncestorResult query(int v, int w) {
+        checkInBounds(v);
+        checkInBounds(w);
+        
+        long result = search(v, w);
+        return new AncestorResult(resultDist(result), resultAnc(result));
+    }
+    
+    // length and shortest common ancestor of vertices v and w, found within
+    // the limit; if the limit stops the search first, the result is not
+    // exact, see AncestorResult.isExact()
+    public AncestorResult query(int v, int w, SearchLimit limit) {
+        checkInBounds(v);
+        checkInBounds(w);
+        if (limit == null) throw new NullPointerException();
+        return searchValidated(new int[] { v }, new int[] { w }, limit, 0);
+    }
+    
+    // the same, for vertex arrays
+    public AncestorResult query(int[] subsetA, int[] subsetB, SearchLimit limit) {
+        checkSubset(subsetA);
+        checkSubset(subsetB);
+        if (limit == null) throw new NullPointerException();
+        return searchValidated(subsetA, subsetB, limit, 0);
+    }
+    
+    // starts a query of vertices v and w within the limit on the executor;
+    // the arguments are checked before it starts. Cancelling the future
+    // stops the search
+    public CompletableFuture<AncestorResult> queryAsync(int v, int w,
+                                                        SearchLimit limit) {
+        checkInBounds(v);
+        checkInBounds(w);
+        if (limit == null) throw new NullPointerException();
+        return submit(() -> searchValidated(new int[] { v }, new int[] { w },
+                                            limit, 0), limit, executor);
+    }
+    
+    // the same, for vertex arrays, which are copied before the call returns
+    public CompletableFuture<AncestorResult> queryAsync(int[] subsetA, int[] subsetB,
+                                                        SearchLimit limit) {
+        checkSubset(subsetA);
+        checkSubset(subsetB);
+        if (limit == null) throw new NullPointerException();
+        int[] a = subsetA.clone();
+        int[] b = subsetB.clone();
+        return submit(() -> searchValidated(a, b, limit, 0), limit, executor);
+    }
+    
+    // length, shortest common ancestor and the vertices of a shortest
+    // ancestral path between v and w; always searched by BFS, since the
+    // ancestor labels do not record paths
+    public AncestorResult ancestralPath(int v, int w) {
+        checkInBounds(v);
+        checkInBounds(w);
+        
+        DeluxeBFS bfs = workspace.borrow();
+        try {
+            bfs.search(v, w);
+            return new AncestorResult(bfs.getDist(), bfs.getAnc(),
+                                      bfs.getPath(), null);
+        } finally {
+            workspace.release(bfs);
         }
-        // check if subsetA is empty
-        if (counterA == 0) throw new IllegalArgumentException();
+    }
+    
+    // private helper method to check that a subset of vertices is non-empty
+    // and in bounds
+    private void checkSubset(Iterable<Integer> subset) {
+        if (subset == null) throw new NullPointerException();
         
-        // check if subsetB contains a vertex that is out of bounds
-        int counterB = 0;
-        for (int i : subsetB) {
+        int counter = 0;
+        for (int i : subset) {
             checkInBounds(i);
-            counterB++;
+            counter++;
         }
-        // check if subsetB is empty
-        if (counterB == 0) throw new IllegalArgumentException();
-        
-        DeluxeBFS length = new DeluxeBFS(graph, subsetA, subsetB);
-        return length.getDist();
-        
+        if (counter == 0) throw new IllegalArgumentException();
+    }
+
+   // length of shortest ancestral path of vertex subsets A and B
+    public int length(Iterable<Integer> subsetA, Iterable<Integer> subsetB) {
+        checkSubset(subsetA);
+        checkSubset(subsetB);
+        return resultDist(search(subsetA, subsetB));
     }
 
    // a shortest common ancestor of vertex subsets A and B
     public int ancestor(Iterable<Integer> subsetA, Iterable<Integer> subsetB) {
-        if (subsetA == null || subsetB == null) throw new NullPointerException();
+        checkSubset(subsetA);
+        checkSubset(subsetB);
+        return resultAnc(search(subsetA, subsetB));
+    }
+
+    // length and shortest common ancestor of vertex subsets A and B
+    public AncestorResult query(Iterable<Integer> subsetA,
+                                Iterable<Integer> subsetB) {
+        checkSubset(subsetA);
+        checkSubset(subsetB);
         
-        // check if any vertex in either iterable object is out of bounds,
-        // or if either iterable is empty
-        int counterA = 0;
-        for (int i : subsetA) {
-            checkInBounds(i);
-            counterA++;
-        } 
-        if (counterA == 0) throw new IllegalArgumentException();
+        long result = search(subsetA, subsetB);
+        return new AncestorResult(resultDist(result), resultAnc(result));
+    }
+    
+    // length, shortest common ancestor and the vertices of a shortest
+    // ancestral path of vertex subsets A and B
+    public AncestorResult ancestralPath(Iterable<Integer> subsetA,
+                                        Iterable<Integer> subsetB) {
+        checkSubset(subsetA);
+        checkSubset(subsetB);
+        
+        DeluxeBFS bfs = workspace.borrow();
+        try {
+            bfs.search(subsetA, subsetB);
+            return new AncestorResult(bfs.getDist(), bfs.getAnc(),
+                                      bfs.getPath(), null);
+        } finally {
+            workspace.release(bfs);
+        }
+    }
 
-        int counterB = 0;
-        for (int i : subsetB) {
-            checkInBounds(i);
-            counterB++;
+   // length of shortest ancestral path of vertex arrays A and B
+    public int length(int[] subsetA, int[] subsetB) {
+        checkSubset(subsetA);
+        checkSubset(subsetB);
+        return resultDist(searchValidated(subsetA, subsetB));
+    }
+    
+   // a shortest common ancestor of vertex arrays A and B
+    public int ancestor(int[] subsetA, int[] subsetB) {
+        checkSubset(subsetA);
+        checkSubset(subsetB);
+        return resultAnc(searchValidated(subsetA, subsetB));
+    }
+    
+    // private helper method to check that an array of vertices is non-empty
+    // and in bounds
+    private void checkSubset(int[] subset) {
+        if (subset == null) throw new NullPointerException();
+        if (subset.length == 0) throw new IllegalArgumentException();
+        for (int v : subset) {
+            checkInBounds(v);
         }
-        if (counterB == 0) throw new IllegalArgumentException();
-        
-        DeluxeBFS anc = new DeluxeBFS(graph, subsetA, subsetB);
-        return anc.getAnc();
     }
     
     // do unit testing of this class
@@ -146,9 +762,10 @@ public class ShortestCommonAncestor {
         while (!StdIn.isEmpty()) {
             int v = StdIn.readInt();
             int w = StdIn.readInt();
-            int length   = sca.length(v, w);
-            int ancestor = sca.ancestor(v, w);
-            StdOut.printf("length = %d, ancestor = %d\n", length, ancestor);
+            // one search finds both the length and the ancestor
+            AncestorResult result = sca.query(v, w);
+            StdOut.printf("length = %d, ancestor = %d\n", result.distance(),
+                          result.ancestor());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,158 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  Generates random synsets and hypernyms files shaped like
+  *  WordNet, so WordNet can be built and benchmarked without the real data
+  *  files. Synset 0 is the root, and every other synset has a hypernym with
+  *  a smaller ID, chosen uniformly at random, so the digraph is a rooted DAG
+  *  of logarithmic depth. A fraction of the synsets get a second hypernym,
+  *  and a fraction of the nouns belong to more than one synset. The same
+  *  seed always generates the same files.
+  * 
+  *****************************************************************************/
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+public class SyntheticWordNet {
+    
+    // most nouns in a single synset
+    private static final int MAX_SYNONYMS = 3;
+    
+    // synset-ID-indexed words field of each synset
+    private final String[] synsets;
+    // synset-ID-indexed hypernyms of each synset, empty for the root
+    private final int[][] hypernyms;
+    
+    // constructor takes the number of synsets, the fraction of synsets with
+    // a second hypernym, the fraction of nouns reused from another synset,
+    // and the seed of the random numbers
+    public SyntheticWordNet(int numOfV, double multipleHypernyms,
+                            double polysemy, long seed) {
+        if (numOfV <= 0) throw new IllegalArgumentException();
+        if (multipleHypernyms < 0 || multipleHypernyms > 1
+                || polysemy < 0 || polysemy > 1) {
+            throw new IllegalArgumentException();
+        }
+        
+        Random random = new Random(seed);
+        synsets = new String[numOfV];
+        hypernyms = new int[numOfV][];
+        hypernyms[0] = new int[0];
+        
+        // counts the distinct nouns made so far, which keeps them unique
+        int nouns = 0;
+        for (int v = 0; v < numOfV; v++) {
+            if (v > 0) {
+                int first = random.nextInt(v);
+                if (v > 1 && random.nextDouble() < multipleHypernyms) {
+                    int second = random.nextInt(v - 1);
+                    if (second >= first) second++;
+                    hypernyms[v] = new int[] { first, second };
+                } else {
+                    hypernyms[v] = new int[] { first };
+                }
+            }
+            
+            StringBuilder words = new StringBuilder();
+            int synonyms = 1 + random.nextInt(MAX_SYNONYMS);
+            for (int i = 0; i < synonyms; i++) {
+                if (i > 0) words.append(' ');
+                // reuses the first noun of an earlier synset, which may
+                // repeat a noun within this synset as WordNet never does,
+                // so only the first noun of a synset is ever reused
+                if (i == 0 && v > 0 && random.nextDouble() < polysemy) {
+                    String other = synsets[random.nextInt(v)];
+                    int end = other.indexOf(' ');
+                    words.append(end < 0 ? other : other.substring(0, end));
+                } else {
+                    words.append(noun(random, nouns++));
+                }
+            }
+            synsets[v] = words.toString();
+        }
+    }
+    
+    // a new noun: three random letters, so nouns are not sorted by synset,
+    // then the count in base 26, so no two nouns are equal
+    private static String noun(Random random, int count) {
+        StringBuilder noun = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            noun.append((char) ('a' + random.nextInt(26)));
+        }
+        do {
+            noun.append((char) ('a' + count % 26));
+            count /= 26;
+        } while (count > 0);
+        return noun.toString();
+    }
+    
+    // number of synsets
+    public int V() {
+        return synsets.length;
+    }
+    
+    // writes the synsets and hypernyms files in the format WordNet reads
+    public void write(String synsetsFile, String hypernymsFile) {
+        if (synsetsFile == null || hypernymsFile == null) {
+            throw new NullPointerException();
+        }
+        try (PrintWriter out = new PrintWriter(
+                 new BufferedWriter(new FileWriter(synsetsFile)))) {
+            for (int v = 0; v < synsets.length; v++) {
+                out.print(v);
+                out.print(',');
+                out.print(synsets[v]);
+                out.print(",synthetic synset ");
+                out.println(v);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("could not write " + synsetsFile, e);
+        }
+        try (PrintWriter out = new PrintWriter(
+                 new BufferedWriter(new FileWriter(hypernymsFile)))) {
+            for (int v = 0; v < synsets.length; v++) {
+                out.print(v);
+                for (int w : hypernyms[v]) {
+                    out.print(',');
+                    out.print(w);
+                }
+                out.println();
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("could not write " + hypernymsFile, e);
+        }
+    }
+    
+    // writes the files to temporary files deleted on exit, and returns their
+    // names, synsets first
+    public String[] writeTemporary() {
+        try {
+            File synsetsFile = File.createTempFile("synsets", ".txt");
+            File hypernymsFile = File.createTempFile("hypernyms", ".txt");
+            synsetsFile.deleteOnExit();
+            hypernymsFile.deleteOnExit();
+            write(synsetsFile.getPath(), hypernymsFile.getPath());
+            return new String[] { synsetsFile.getPath(), hypernymsFile.getPath() };
+        } catch (IOException e) {
+            throw new IllegalArgumentException("could not create temporary files", e);
+        }
+    }
+    
+    // writes files of args[0] synsets to args[1] and args[2]; an optional
+    // args[3] is the seed
+    public static void main(String[] args) {
+        int numOfV = Integer.parseInt(args[0]);
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        SyntheticWordNet synthetic = new SyntheticWordNet(numOfV, 0.02, 0.1, seed);
+        synthetic.write(args[1], args[2]);
+        
+        WordNet test = new WordNet(args[1], args[2]);
+        System.out.println("Wrote " + synthetic.V() + " synsets");
+        System.out.println(test.memoryReport());
+    }
+}
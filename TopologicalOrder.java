@@ -0,0 +1,148 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  Checks that a digraph is a rooted DAG in one iterative
+  *  pass, and keeps the topological order that the pass finds and the
+  *  shortest and longest path from every vertex to the root. Uses Kahn's
+  *  algorithm: vertices without incoming edges are removed first, then
+  *  every vertex whose incoming edges all came from removed vertices. A
+  *  cycle leaves some vertices never removed. Unlike a recursive
+  *  depth-first search, the pass cannot overflow the stack on deep chains.
+  * 
+  *****************************************************************************/
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.In;
+
+public class TopologicalOrder {
+    
+    // vertices in topological order: every vertex comes before all of its
+    // hypernyms, so the root is last
+    private final int[] order;
+    // vertex-indexed length of the shortest path to the root
+    private final int[] depth;
+    // vertex-indexed length of the longest path to the root; strictly
+    // decreases along every edge
+    private final int[] maxDepth;
+    // longest path from any vertex to the root
+    private final int height;
+    // the only vertex without outgoing edges
+    private final int root;
+    
+    // constructor checks that G is a rooted DAG, throwing an
+    // IllegalArgumentException otherwise
+    public TopologicalOrder(CompactDigraph G) {
+        if (G == null) throw new NullPointerException();
+        int numOfV = G.V();
+        if (numOfV == 0) throw new IllegalArgumentException("digraph is empty");
+        
+        // the order array doubles as the queue of removable vertices
+        order = new int[numOfV];
+        int head = 0;
+        int tail = 0;
+        int[] remaining = new int[numOfV];
+        int foundRoot = -1;
+        for (int v = 0; v < numOfV; v++) {
+            remaining[v] = G.indegree(v);
+            if (remaining[v] == 0) order[tail++] = v;
+            if (G.outdegree(v) == 0) {
+                if (foundRoot >= 0) {
+                    throw new IllegalArgumentException("digraph has more than "
+                                                           + "one root");
+                }
+                foundRoot = v;
+            }
+        }
+        if (foundRoot < 0) throw new IllegalArgumentException("digraph has no root");
+        root = foundRoot;
+        
+        while (head < tail) {
+            int v = order[head++];
+            for (int e = G.adjStart(v), end = G.adjEnd(v); e < end; e++) {
+                int w = G.target(e);
+                remaining[w]--;
+                if (remaining[w] == 0) order[tail++] = w;
+            }
+        }
+        if (tail < numOfV) throw new IllegalArgumentException("digraph has a cycle");
+        
+        // in reverse order every hypernym of a vertex is done before it; in
+        // a DAG with one root, every vertex has a path to the root
+        depth = new int[numOfV];
+        maxDepth = new int[numOfV];
+        int longestOfAll = 0;
+        for (int i = numOfV - 2; i >= 0; i--) {
+            int v = order[i];
+            int shortest = Integer.MAX_VALUE;
+            int longest = 0;
+            for (int e = G.adjStart(v), end = G.adjEnd(v); e < end; e++) {
+                int w = G.target(e);
+                shortest = Math.min(shortest, depth[w]);
+                longest = Math.max(longest, maxDepth[w]);
+            }
+            depth[v] = shortest + 1;
+            maxDepth[v] = longest + 1;
+            longestOfAll = Math.max(longestOfAll, longest + 1);
+        }
+        height = longestOfAll;
+    }
+    
+    // the root of the DAG
+    public int root() {
+        return root;
+    }
+    
+    // the vertex at the given position of the topological order, in which
+    // every vertex comes before its hypernyms and the root is last
+    public int vertex(int i) {
+        return order[i];
+    }
+    
+    // number of vertices
+    public int V() {
+        return order.length;
+    }
+    
+    // length of the shortest path from v to the root
+    public int depth(int v) {
+        return depth[v];
+    }
+    
+    // length of the longest path from v to the root
+    public int maxDepth(int v) {
+        return maxDepth[v];
+    }
+    
+    // length of the longest path from any vertex to the root
+    public int height() {
+        return height;
+    }
+    
+    // vertex-indexed shortest and longest depths, shared with searches that
+    // prune by depth
+    int[] depths() {
+        return depth;
+    }
+    
+    int[] maxDepths() {
+        return maxDepth;
+    }
+    
+    // approximate number of bytes used by the order and depths
+    public long memoryUsage() {
+        return 4L * (order.length + depth.length + maxDepth.length);
+    }
+    
+    // do unit testing of this class
+    public static void main(String[] args) {
+        In in = new In(args[0]);
+        Digraph G = new Digraph(in);
+        TopologicalOrder topological = new TopologicalOrder(new CompactDigraph(G));
+        int maxDepth = 0;
+        for (int v = 0; v < topological.V(); v++) {
+            maxDepth = Math.max(maxDepth, topological.depth(v));
+        }
+        System.out.println("root = " + topological.root()
+                               + ", greatest depth = " + maxDepth);
+    }
+}
@@ -0,0 +1,254 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  Answers shortest common ancestor queries in O(1) between
+  *  vertices of the tree-shaped part of a rooted DAG: the vertices whose
+  *  path to the root is unique, because they and all of their ancestors
+  *  have at most one hypernym. These vertices form a tree around the root,
+  *  and the shortest common ancestor of two of them is their lowest common
+  *  ancestor in it. The tree is laid out in Euler tour (preorder) order,
+  *  where every subtree is a contiguous range, and a sparse table holds the
+  *  minimum over every range of a power-of-two length of the position of
+  *  each vertex's parent. For vertices at positions a < b, every vertex in
+  *  (a, b] lies below their lowest common ancestor, and the shallowest of
+  *  them is its child, so the smallest parent position in the range is the
+  *  position of the lowest common ancestor.
+  * 
+  *****************************************************************************/
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+public class TreeLCA {
+    
+    // used to report that a query involves vertices outside the tree
+    public static final long MISS = -1L;
+    
+    // largest number of source pairs a subset query tries; larger queries
+    // are left to the search, which handles all sources at once
+    private static final int MAX_PAIRS = 64;
+    
+    // vertex-indexed position of each vertex in the tour, -1 for vertices
+    // outside the tree
+    private final int[] position;
+    // vertex at each position of the tour
+    private final int[] vertexAt;
+    // minimum parent position over [i, i + 2^k) at level k, with the parent
+    // position of the root taken to be -1
+    private final int[][] table;
+    // vertex-indexed length of the shortest path to the root, which in the
+    // tree is the only path
+    private final int[] depth;
+    // time taken to build the tour and table, in milliseconds
+    private final long buildMillis;
+    
+    // constructor finds the tree-shaped part of a rooted DAG, given its
+    // topological order
+    public TreeLCA(CompactDigraph G, TopologicalOrder topological) {
+        if (G == null || topological == null) throw new NullPointerException();
+        if (topological.V() != G.V()) throw new IllegalArgumentException();
+        
+        long start = System.nanoTime();
+        int numOfV = G.V();
+        depth = topological.depths();
+        
+        // from the root down, a vertex is in the tree if it is the root or
+        // its only hypernym is; counts the children of each tree vertex
+        position = new int[numOfV];
+        int[] childStart = new int[numOfV + 1];
+        int size = 0;
+        for (int i = numOfV - 1; i >= 0; i--) {
+            int v = topological.vertex(i);
+            position[v] = -1;
+            int outdegree = G.adjEnd(v) - G.adjStart(v);
+            if (outdegree == 0) {
+                position[v] = 0;
+                size++;
+            } else if (outdegree == 1) {
+                int parent = G.target(G.adjStart(v));
+                if (position[parent] >= 0) {
+                    position[v] = 0;
+                    childStart[parent + 1]++;
+                    size++;
+                }
+            }
+        }
+        
+        // children of each tree vertex, grouped by parent
+        for (int v = 0; v < numOfV; v++) {
+            childStart[v + 1] += childStart[v];
+        }
+        int[] children = new int[size - 1];
+        int[] next = new int[numOfV];
+        System.arraycopy(childStart, 0, next, 0, numOfV);
+        for (int v = 0; v < numOfV; v++) {
+            if (position[v] >= 0 && G.adjEnd(v) > G.adjStart(v)) {
+                children[next[G.target(G.adjStart(v))]++] = v;
+            }
+        }
+        
+        // tours the tree from the root with an explicit stack, so deep
+        // chains cannot overflow the call stack; each vertex is numbered
+        // when popped, before its children, so every subtree is contiguous
+        vertexAt = new int[size];
+        int[] parentPosition = new int[size];
+        int[] stack = new int[size];
+        int top = 0;
+        stack[top++] = topological.root();
+        int visited = 0;
+        while (top > 0) {
+            int v = stack[--top];
+            position[v] = visited;
+            vertexAt[visited] = v;
+            parentPosition[visited++] = (G.adjEnd(v) > G.adjStart(v))
+                ? position[G.target(G.adjStart(v))] : -1;
+            for (int e = childStart[v]; e < childStart[v + 1]; e++) {
+                stack[top++] = children[e];
+            }
+        }
+        
+        // level k covers ranges of length 2^k, built from two halves of
+        // level k - 1
+        int levels = 32 - Integer.numberOfLeadingZeros(size);
+        table = new int[levels][];
+        table[0] = parentPosition;
+        for (int k = 1; k < levels; k++) {
+            int half = 1 << (k - 1);
+            int[] below = table[k - 1];
+            int[] level = new int[size - (1 << k) + 1];
+            for (int i = 0; i < level.length; i++) {
+                level[i] = Math.min(below[i], below[i + half]);
+            }
+            table[k] = level;
+        }
+        
+        buildMillis = (System.nanoTime() - start) / 1000000;
+    }
+    
+    // is the path from v to the root unique?
+    public boolean contains(int v) {
+        return position[v] >= 0;
+    }
+    
+    // number of vertices in the tree
+    public int size() {
+        return vertexAt.length;
+    }
+    
+    // lowest common ancestor of two vertices in the tree
+    public int lca(int v, int w) {
+        int a = position[v];
+        int b = position[w];
+        if (a < 0 || b < 0) throw new IllegalArgumentException();
+        if (a == b) return v;
+        if (a > b) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        
+        // two overlapping ranges of length 2^k cover (a, b]
+        int k = 31 - Integer.numberOfLeadingZeros(b - a);
+        return vertexAt[Math.min(table[k][a + 1], table[k][b - (1 << k) + 1])];
+    }
+    
+    // shortest common ancestor of v and w packed by ShortestCommonAncestor,
+    // or MISS if either is outside the tree
+    public long query(int v, int w) {
+        if (position[v] < 0 || position[w] < 0) return MISS;
+        int ancestor = lca(v, w);
+        return ShortestCommonAncestor.result(depth[v] + depth[w]
+                                                 - 2 * depth[ancestor], ancestor);
+    }
+    
+    // shortest common ancestor of two vertex arrays, found as the best of
+    // every pair, or MISS if any vertex is outside the tree or there are too
+    // many pairs
+    public long query(int[] subsetA, int[] subsetB) {
+        if (subsetA.length * subsetB.length > MAX_PAIRS) return MISS;
+        for (int v : subsetA) {
+            if (position[v] < 0) return MISS;
+        }
+        for (int w : subsetB) {
+            if (position[w] < 0) return MISS;
+        }
+        
+        long best = Long.MAX_VALUE;
+        for (int v : subsetA) {
+            for (int w : subsetB) {
+                // packed results order by distance first
+                best = Math.min(best, query(v, w));
+            }
+        }
+        return best;
+    }
+    
+    // the same, for vertex subsets
+    public long query(Iterable<Integer> subsetA, Iterable<Integer> subsetB) {
+        int sizeA = 0;
+        for (int v : subsetA) {
+            if (position[v] < 0) return MISS;
+            sizeA++;
+        }
+        int sizeB = 0;
+        for (int w : subsetB) {
+            if (position[w] < 0) return MISS;
+            sizeB++;
+        }
+        if (sizeA * sizeB > MAX_PAIRS) return MISS;
+        
+        long best = Long.MAX_VALUE;
+        for (int v : subsetA) {
+            for (int w : subsetB) {
+                best = Math.min(best, query(v, w));
+            }
+        }
+        return best;
+    }
+    
+    // time taken to build the tour and table, in milliseconds
+    public long buildMillis() {
+        return buildMillis;
+    }
+    
+    // approximate number of bytes used by the positions, tour and table;
+    // the depths are shared with the topological order
+    public long memoryUsage() {
+        long bytes = 4L * (position.length + vertexAt.length);
+        for (int[] level : table) {
+            bytes += 4L * level.length;
+        }
+        return bytes;
+    }
+    
+    // do unit testing of this class: checks random pairs of tree vertices
+    // against the BFS
+    public static void main(String[] args) {
+        In in = new In(args[0]);
+        int trials = Integer.parseInt(args[1]);
+        CompactDigraph G = new CompactDigraph(new Digraph(in));
+        TopologicalOrder topological = new TopologicalOrder(G);
+        TreeLCA tree = new TreeLCA(G, topological);
+        StdOut.println(tree.size() + " of " + G.V() + " vertices in the tree, "
+                           + tree.memoryUsage() + " bytes, built in "
+                           + tree.buildMillis() + " ms");
+        
+        DeluxeBFS bfs = new DeluxeBFS(G, topological);
+        int checked = 0;
+        for (int i = 0; i < trials; i++) {
+            int v = StdRandom.uniform(G.V());
+            int w = StdRandom.uniform(G.V());
+            long result = tree.query(v, w);
+            if (result == MISS) continue;
+            bfs.search(v, w);
+            if (ShortestCommonAncestor.resultDist(result) != bfs.getDist()
+                    || ShortestCommonAncestor.resultAnc(result) != bfs.getAnc()) {
+                StdOut.println("mismatch for " + v + " and " + w);
+            }
+            checked++;
+        }
+        StdOut.println(checked + " pairs checked");
+    }
+}
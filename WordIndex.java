@@ -0,0 +1,708 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  Read-only dictionary from WordNet nouns to the array of
+  *  synset ID's each noun belongs to, and from each synset to its nouns.
+  *  The text of every noun is stored once, UTF-8 encoded, in one byte array
+  *  in sorted order, and a noun is referred to by its index in that order,
+  *  its word ID; each synset is stored as the word ID's of its words field,
+  *  so no String is kept for either, and one is only made when a noun or
+  *  synset is returned. Nouns are found through an open-addressing hash
+  *  table of word ID's. The hash of every noun is cached next to the table,
+  *  so most probes that miss are rejected without comparing text. The
+  *  sorted order doubles as an implicit trie for prefix and bounded edit
+  *  distance searches: nouns sharing a prefix are contiguous, so a whole
+  *  subtree is a range of word ID's.
+  * 
+  *****************************************************************************/
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class WordIndex {
+    
+    // UTF-8 text of every noun back to back in sorted order, and the offset
+    // of each noun's text by word ID, with one more for the end
+    private final byte[] text;
+    private final int[] textStart;
+    // synset ID's of each noun by word ID
+    private final int[][] synsets;
+    // word ID's of the words field of every synset, in order: the words of
+    // synset s are synsetWords[synsetStart[s]] to synsetWords[synsetStart[s + 1] - 1]
+    private final int[] synsetStart;
+    private final int[] synsetWords;
+    // open-addressing table of word ID + 1, 0 marks an empty slot
+    private final int[] table;
+    // hash of the noun in each slot of the table
+    private final int[] hashes;
+    // table.length - 1, the table length is a power of two
+    private final int mask;
+    
+    // constructor takes the text of the nouns in strictly increasing order
+    // with the offset of each, the synset ID's of each noun, and the word
+    // ID's of every synset
+    WordIndex(byte[] text, int[] textStart, int[][] synsets,
+              int[] synsetStart, int[] synsetWords) {
+        if (text == null || textStart == null || synsets == null
+                || synsetStart == null || synsetWords == null) {
+            throw new NullPointerException();
+        }
+        if (textStart.length != synsets.length + 1) throw new IllegalArgumentException();
+        
+        this.text = text;
+        this.textStart = textStart;
+        this.synsets = synsets;
+        this.synsetStart = synsetStart;
+        this.synsetWords = synsetWords;
+        
+        // at most half full, so probe sequences stay short
+        int numOfWords = synsets.length;
+        int capacity = Integer.highestOneBit(Math.max(2, 2 * numOfWords) * 2 - 1);
+        table = new int[capacity];
+        hashes = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < numOfWords; i++) {
+            if (i > 0 && compare(i - 1, word(i)) >= 0) {
+                throw new IllegalArgumentException("nouns not in order at "
+                                                       + word(i));
+            }
+            int h = hashOf(i);
+            int slot = h & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+            hashes[slot] = h;
+        }
+    }
+    
+    // builds an index from the words field of every synset, by synset ID
+    public static WordIndex fromSynsets(String[] synsetArray) {
+        if (synsetArray == null) throw new NullPointerException();
+        int numOfV = synsetArray.length;
+        HashMap<String, int[]> words = new HashMap<String, int[]>();
+        String[][] synsetWords = new String[numOfV][];
+        
+        // done for each synset
+        for (int synsetID = 0; synsetID < numOfV; synsetID++) {
+            // different words in a synset are separated by spaces
+            synsetWords[synsetID] = synsetArray[synsetID].split(" ", -1);
+            for (String word : synsetWords[synsetID]) {
+                // create symbol table of words that hold an array of
+                // synsetID's that they are found in
+                int[] ids = words.get(word);
+                int[] toAdd;
+                
+                // if not already in ST
+                if (ids == null) {
+                    // create a new array holding the synset it was first
+                    // encountered in
+                    toAdd = new int[] { synsetID };
+                } else {
+                    // grow the array by the current synset ID; most words
+                    // are in only a few synsets, so copying is cheap
+                    toAdd = Arrays.copyOf(ids, ids.length + 1);
+                    toAdd[ids.length] = synsetID;
+                }
+                
+                // add to ST
+                words.put(word, toAdd);
+            }
+        }
+        
+        String[] sorted = words.keySet().toArray(new String[0]);
+        Arrays.sort(sorted);
+        int[][] synsets = new int[sorted.length][];
+        for (int i = 0; i < sorted.length; i++) {
+            synsets[i] = words.get(sorted[i]);
+        }
+        WordIndex empty = new WordIndex(new byte[0], new int[] { 0 }, new int[0][],
+                                        new int[] { 0 }, new int[0]);
+        return empty.merge(new int[0][], sorted, synsets, synsetWords);
+    }
+    
+    // a new index with the given synsets added after the last synset of
+    // this one; their nouns gain their ID's, and nouns not yet in this index
+    // are added. The sorted new nouns are merged into the sorted nouns, so
+    // nothing is sorted again; this index is not changed
+    public WordIndex withSynsets(String[] added) {
+        if (added == null) throw new NullPointerException();
+        int oldV = V();
+        HashMap<String, int[]> changes = new HashMap<String, int[]>();
+        String[][] addedWords = new String[added.length][];
+        for (int i = 0; i < added.length; i++) {
+            int synsetID = oldV + i;
+            addedWords[i] = added[i].split(" ", -1);
+            for (String word : addedWords[i]) {
+                int[] ids = changes.get(word);
+                if (ids == null) ids = get(word);
+                int[] toAdd;
+                if (ids == null) {
+                    toAdd = new int[] { synsetID };
+                } else {
+                    toAdd = Arrays.copyOf(ids, ids.length + 1);
+                    toAdd[ids.length] = synsetID;
+                }
+                changes.put(word, toAdd);
+            }
+        }
+        
+        // nouns already in this index only get their new synset ID's
+        int[][] newSynsets = synsets.clone();
+        int numOfNew = 0;
+        String[] fresh = new String[changes.size()];
+        int[][] freshSynsets = new int[fresh.length][];
+        for (String word : changes.keySet()) {
+            int i = indexOf(word);
+            if (i >= 0) newSynsets[i] = changes.get(word);
+            else fresh[numOfNew++] = word;
+        }
+        fresh = Arrays.copyOf(fresh, numOfNew);
+        Arrays.sort(fresh);
+        for (int j = 0; j < numOfNew; j++) {
+            freshSynsets[j] = changes.get(fresh[j]);
+        }
+        return merge(newSynsets, fresh, Arrays.copyOf(freshSynsets, numOfNew),
+                     addedWords);
+    }
+    
+    // private helper method that builds a new index from the text and
+    // synset table of this one, with the given synset ID's for its nouns,
+    // sorted new nouns merged into the text and the words of new synsets
+    // added to the table. Word ID's follow sorted order before and after,
+    // so the table's old word ID's are renumbered
+    private WordIndex merge(int[][] oldSynsets, String[] fresh, int[][] freshSynsets,
+                            String[][] addedWords) {
+        byte[] oldText = text;
+        int[] oldStart = textStart;
+        int[] oldSynsetStart = synsetStart;
+        int[] oldSynsetWords = synsetWords;
+        int numOfOld = oldSynsets.length;
+        int numOfWords = numOfOld + fresh.length;
+        byte[][] freshText = new byte[fresh.length][];
+        int numOfBytes = oldText.length;
+        for (int j = 0; j < fresh.length; j++) {
+            freshText[j] = fresh[j].getBytes(StandardCharsets.UTF_8);
+            numOfBytes += freshText[j].length;
+        }
+        
+        byte[] newText = new byte[numOfBytes];
+        int[] newStart = new int[numOfWords + 1];
+        int[][] newSynsets = new int[numOfWords][];
+        // new word ID of each old noun and of each new noun
+        int[] oldToNew = new int[numOfOld];
+        int[] freshToNew = new int[fresh.length];
+        int i = 0;
+        int j = 0;
+        int at = 0;
+        for (int n = 0; n < numOfWords; n++) {
+            newStart[n] = at;
+            if (j == fresh.length || (i < numOfOld && compare(i, fresh[j]) < 0)) {
+                int length = oldStart[i + 1] - oldStart[i];
+                System.arraycopy(oldText, oldStart[i], newText, at, length);
+                at += length;
+                newSynsets[n] = oldSynsets[i];
+                oldToNew[i++] = n;
+            } else {
+                System.arraycopy(freshText[j], 0, newText, at, freshText[j].length);
+                at += freshText[j].length;
+                newSynsets[n] = freshSynsets[j];
+                freshToNew[j++] = n;
+            }
+        }
+        newStart[numOfWords] = at;
+        
+        // the old synsets renumbered, then the new ones
+        int oldV = oldSynsetStart.length - 1;
+        int numOfTokens = oldSynsetWords.length;
+        for (String[] words : addedWords) {
+            numOfTokens += words.length;
+        }
+        int[] newSynsetStart = Arrays.copyOf(oldSynsetStart, oldV + addedWords.length + 1);
+        int[] newSynsetWords = new int[numOfTokens];
+        for (int k = 0; k < oldSynsetWords.length; k++) {
+            newSynsetWords[k] = oldToNew[oldSynsetWords[k]];
+        }
+        int k = oldSynsetWords.length;
+        for (int s = 0; s < addedWords.length; s++) {
+            for (String word : addedWords[s]) {
+                int f = Arrays.binarySearch(fresh, word);
+                newSynsetWords[k++] = (f >= 0) ? freshToNew[f] : oldToNew[indexOf(word)];
+            }
+            newSynsetStart[oldV + s + 1] = k;
+        }
+        return new WordIndex(newText, newStart, newSynsets, newSynsetStart,
+                             newSynsetWords);
+    }
+    
+    // spreads the bits of the string hash so the low bits pick the slot well
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+    
+    // the spread hash of a word
+    private static int hash(String word) {
+        return spread(word.hashCode());
+    }
+    
+    // the spread hash of the noun with the given word ID, equal to the hash
+    // of its String; ASCII text is hashed in place
+    private int hashOf(int i) {
+        int h = 0;
+        for (int at = textStart[i]; at < textStart[i + 1]; at++) {
+            if (text[at] < 0) return hash(word(i));
+            h = 31 * h + text[at];
+        }
+        return spread(h);
+    }
+    
+    // compares the noun with the given word ID to a word, with the sign of
+    // String.compareTo; ASCII text is compared in place
+    private int compare(int i, String word) {
+        int start = textStart[i];
+        int length = textStart[i + 1] - start;
+        int n = Math.min(length, word.length());
+        for (int k = 0; k < n; k++) {
+            int b = text[start + k];
+            if (b < 0) return word(i).compareTo(word);
+            int c = word.charAt(k);
+            if (b != c) return b - c;
+        }
+        // the first n characters are equal and ASCII, so the longer is larger
+        if (length > n) {
+            return 1;
+        }
+        return n - word.length();
+    }
+    
+    // does the noun with the given word ID start with the prefix?
+    private boolean startsWith(int i, String prefix) {
+        int start = textStart[i];
+        int length = textStart[i + 1] - start;
+        for (int k = 0; k < prefix.length(); k++) {
+            if (k == length) return false;
+            int b = text[start + k];
+            if (b < 0) return word(i).startsWith(prefix);
+            if (b != prefix.charAt(k)) return false;
+        }
+        return true;
+    }
+    
+    // the characters of the noun with the given word ID, written into the
+    // buffer, which holds at least as many chars as the noun has bytes;
+    // returns their number
+    private int chars(int i, char[] buffer) {
+        int start = textStart[i];
+        int length = textStart[i + 1] - start;
+        for (int k = 0; k < length; k++) {
+            int b = text[start + k];
+            if (b < 0) {
+                String word = word(i);
+                word.getChars(0, word.length(), buffer, 0);
+                return word.length();
+            }
+            buffer[k] = (char) b;
+        }
+        return length;
+    }
+    
+    // word ID of the noun, or -1 if it is not a noun
+    public int indexOf(String word) {
+        if (word == null) throw new NullPointerException();
+        int h = hash(word);
+        for (int slot = h & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            if (hashes[slot] == h && compare(table[slot] - 1, word) == 0) {
+                return table[slot] - 1;
+            }
+        }
+        return -1;
+    }
+    
+    // synset ID's of the noun, or null if it is not a noun
+    public int[] get(String word) {
+        int i = indexOf(word);
+        if (i < 0) return null;
+        return synsets[i];
+    }
+    
+    // is the word a noun?
+    public boolean contains(String word) {
+        return indexOf(word) >= 0;
+    }
+    
+    // number of nouns
+    public int size() {
+        return synsets.length;
+    }
+    
+    // number of synsets
+    public int V() {
+        return synsetStart.length - 1;
+    }
+    
+    // the noun with the given word ID, decoded from the text
+    public String word(int i) {
+        return new String(text, textStart[i], textStart[i + 1] - textStart[i],
+                          StandardCharsets.UTF_8);
+    }
+    
+    // synset ID's of the noun with the given word ID
+    public int[] synsets(int i) {
+        return synsets[i];
+    }
+    
+    // number of words in the words field of a synset
+    public int synsetSize(int id) {
+        return synsetStart[id + 1] - synsetStart[id];
+    }
+    
+    // word ID of the j-th word of a synset
+    public int synsetWord(int id, int j) {
+        return synsetWords[synsetStart[id] + j];
+    }
+    
+    // the words field of a synset, its words separated by single spaces,
+    // decoded from the text
+    public String synset(int id) {
+        int from = synsetStart[id];
+        int to = synsetStart[id + 1];
+        int length = to - from - 1;
+        for (int k = from; k < to; k++) {
+            length += textStart[synsetWords[k] + 1] - textStart[synsetWords[k]];
+        }
+        byte[] bytes = new byte[length];
+        int at = 0;
+        for (int k = from; k < to; k++) {
+            if (k > from) bytes[at++] = ' ';
+            int i = synsetWords[k];
+            System.arraycopy(text, textStart[i], bytes, at, textStart[i + 1] - textStart[i]);
+            at += textStart[i + 1] - textStart[i];
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    // all nouns in sorted order, each decoded as it is reached
+    public Iterable<String> keys() {
+        return () -> new Iterator<String>() {
+            private int i = 0;
+            
+            public boolean hasNext() {
+                return i < synsets.length;
+            }
+            
+            public String next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return word(i++);
+            }
+        };
+    }
+    
+    // word ID of the first noun that is not less than the prefix
+    private int lowerBound(String prefix) {
+        int lo = 0;
+        int hi = synsets.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(mid, prefix) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+    
+    // word ID of the first noun at or after from that does not start with
+    // the prefix; the nouns starting with it are contiguous from from
+    private int prefixEnd(String prefix, int from) {
+        int lo = from;
+        int hi = synsets.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (startsWith(mid, prefix)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+    
+    // word ID of the first noun after i that does not start with the first
+    // d characters of noun i. When those are ASCII, nouns are compared to
+    // them in place, galloping forward from i since the nouns sharing a
+    // prefix are usually few
+    private int prefixEnd(int i, int d) {
+        int from = textStart[i];
+        for (int k = 0; k < d; k++) {
+            if (text[from + k] < 0) return prefixEnd(word(i).substring(0, d), i);
+        }
+        
+        int lo = i + 1;
+        int step = 1;
+        while (lo < synsets.length && sharesPrefix(lo, from, d)) {
+            lo = i + 1 + step;
+            step *= 2;
+        }
+        // the first noun without the prefix is in (i + step / 2, lo]
+        int hi = Math.min(lo, synsets.length);
+        lo = i + 1 + step / 4;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sharesPrefix(mid, from, d)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+    
+    // does the noun with the given word ID start with the length bytes of
+    // text at from?
+    private boolean sharesPrefix(int i, int from, int length) {
+        int start = textStart[i];
+        if (textStart[i + 1] - start < length) return false;
+        for (int k = 0; k < length; k++) {
+            if (text[start + k] != text[from + k]) return false;
+        }
+        return true;
+    }
+    
+    // word ID's of up to limit nouns starting with the prefix, in sorted
+    // order
+    public int[] withPrefix(String prefix, int limit) {
+        if (prefix == null) throw new NullPointerException();
+        if (limit < 0) throw new IllegalArgumentException();
+        
+        int start = lowerBound(prefix);
+        int end = prefixEnd(prefix, start);
+        int[] matches = new int[Math.min(limit, end - start)];
+        for (int i = 0; i < matches.length; i++) {
+            matches[i] = start + i;
+        }
+        return matches;
+    }
+    
+    // up to limit nouns within maxEdits insertions, deletions or
+    // substitutions of the word, each packed as (edits << 32) | word ID and
+    // sorted by edits, then by noun. Nouns are scanned in sorted order as if
+    // walking a trie: the edit distance table of a noun reuses the rows of
+    // the prefix it shares with the previous noun, and once every entry of a
+    // row exceeds maxEdits, all nouns with that prefix are skipped at once.
+    // Only the band of each row within maxEdits of its diagonal is computed,
+    // since entries outside it always exceed maxEdits, and nouns too short
+    // to be close enough are never scored
+    public long[] similar(String word, int maxEdits, int limit) {
+        if (word == null) throw new NullPointerException();
+        if (maxEdits < 0 || limit < 0) throw new IllegalArgumentException();
+        
+        int m = word.length();
+        char[] target = word.toCharArray();
+        // stands for any distance too large to matter, and marks the entries
+        // just outside the band, which the next row reads
+        int far = maxEdits + 1;
+        // rows[d][j] is the edit distance between the first d characters of
+        // the current noun and the first j characters of the word, for j
+        // within maxEdits of d
+        int[][] rows = new int[16][m + 2];
+        for (int j = 0; j <= m; j++) {
+            rows[0][j] = Math.min(j, far);
+        }
+        rows[0][m + 1] = far;
+        
+        long[] matches = new long[16];
+        int count = 0;
+        
+        // characters of the current and previous noun, and how many of the
+        // previous noun's rows are filled in
+        char[] noun = new char[16];
+        char[] previous = new char[16];
+        int previousLength = 0;
+        int filled = 0;
+        
+        int i = 0;
+        while (i < synsets.length) {
+            int bytes = textStart[i + 1] - textStart[i];
+            if (bytes > noun.length) noun = new char[Math.max(bytes, 2 * noun.length)];
+            int length = chars(i, noun);
+            if (length >= rows.length) {
+                int old = rows.length;
+                rows = Arrays.copyOf(rows, Math.max(length + 1, 2 * old));
+                for (int d = old; d < rows.length; d++) {
+                    rows[d] = new int[m + 2];
+                }
+            }
+            
+            // rows for the shared prefix are still valid
+            int d = 0;
+            int shared = Math.min(filled, previousLength);
+            while (d < shared && d < length && noun[d] == previous[d]) {
+                d++;
+            }
+            
+            boolean pruned = false;
+            boolean tooShort = length < m - maxEdits;
+            if (tooShort) {
+                // only the rows of the shared prefix stay filled in
+                filled = d;
+                i++;
+            } else {
+                for (d = d + 1; d <= length; d++) {
+                    int[] above = rows[d - 1];
+                    int[] row = rows[d];
+                    char c = noun[d - 1];
+                    int lo = Math.max(1, d - maxEdits);
+                    int hi = Math.min(m, d + maxEdits);
+                    int rowMin = far;
+                    if (d <= maxEdits) {
+                        row[0] = d;
+                        rowMin = d;
+                    } else {
+                        row[lo - 1] = far;
+                    }
+                    for (int j = lo; j <= hi; j++) {
+                        int cost = (target[j - 1] == c) ? 0 : 1;
+                        int best = Math.min(above[j - 1] + cost,
+                                            Math.min(above[j] + 1, row[j - 1] + 1));
+                        if (best > far) best = far;
+                        row[j] = best;
+                        if (best < rowMin) rowMin = best;
+                    }
+                    row[hi + 1] = far;
+                    
+                    // no noun with this prefix can be close enough
+                    if (rowMin > maxEdits) {
+                        filled = d - 1;
+                        i = prefixEnd(i, d);
+                        pruned = true;
+                        break;
+                    }
+                }
+                
+                if (!pruned) {
+                    int edits = rows[length][m];
+                    if (edits <= maxEdits) {
+                        if (count == matches.length) matches = Arrays.copyOf(matches, 2 * count);
+                        matches[count++] = ((long) edits << 32) | i;
+                    }
+                    filled = length;
+                    i++;
+                }
+            }
+            
+            // the current noun becomes the previous one
+            char[] swap = previous;
+            previous = noun;
+            noun = swap;
+            previousLength = length;
+        }
+        
+        // word ID's follow sorted noun order, so sorting the packed values
+        // orders by edits, then by noun
+        Arrays.sort(matches, 0, count);
+        return Arrays.copyOf(matches, Math.min(limit, count));
+    }
+    
+    // writes the text, synsets and synset table to a snapshot
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(synsets.length);
+        for (int start : textStart) {
+            out.writeInt(start);
+        }
+        out.write(text);
+        // the synset ID's of every noun, each array preceded by its length
+        for (int[] ids : synsets) {
+            out.writeInt(ids.length);
+            for (int id : ids) {
+                out.writeInt(id);
+            }
+        }
+        out.writeInt(V());
+        out.writeInt(synsetWords.length);
+        for (int start : synsetStart) {
+            out.writeInt(start);
+        }
+        for (int i : synsetWords) {
+            out.writeInt(i);
+        }
+    }
+    
+    // reads an index written by writeTo, advancing the buffer past it
+    public static WordIndex readFrom(ByteBuffer in) {
+        int numOfWords = in.getInt();
+        // every count is checked against the bytes left before anything is
+        // allocated, so a corrupt count cannot exhaust the heap
+        if (numOfWords < 0 || 4L * (numOfWords + 1L) > in.remaining()) {
+            throw new IllegalArgumentException();
+        }
+        int[] textStart = new int[numOfWords + 1];
+        in.asIntBuffer().get(textStart);
+        in.position(in.position() + 4 * textStart.length);
+        checkOffsets(textStart, textStart[numOfWords]);
+        if (textStart[numOfWords] > in.remaining()) throw new IllegalArgumentException();
+        byte[] text = new byte[textStart[numOfWords]];
+        in.get(text);
+        
+        int[][] synsets = new int[numOfWords][];
+        for (int i = 0; i < numOfWords; i++) {
+            int numOfIds = in.getInt();
+            if (numOfIds < 0 || 4L * numOfIds > in.remaining()) {
+                throw new IllegalArgumentException();
+            }
+            int[] ids = new int[numOfIds];
+            in.asIntBuffer().get(ids);
+            in.position(in.position() + 4 * ids.length);
+            synsets[i] = ids;
+        }
+        
+        int numOfV = in.getInt();
+        int numOfTokens = in.getInt();
+        if (numOfV < 0 || numOfTokens < 0
+                || 4L * ((long) numOfV + 1 + numOfTokens) > in.remaining()) {
+            throw new IllegalArgumentException();
+        }
+        int[] synsetStart = new int[numOfV + 1];
+        int[] synsetWords = new int[numOfTokens];
+        in.asIntBuffer().get(synsetStart);
+        in.position(in.position() + 4 * synsetStart.length);
+        in.asIntBuffer().get(synsetWords);
+        in.position(in.position() + 4 * synsetWords.length);
+        checkOffsets(synsetStart, numOfTokens);
+        
+        // every reference must be in range before the index is used
+        for (int[] ids : synsets) {
+            for (int id : ids) {
+                if (id < 0 || id >= numOfV) throw new IllegalArgumentException();
+            }
+        }
+        for (int i : synsetWords) {
+            if (i < 0 || i >= numOfWords) throw new IllegalArgumentException();
+        }
+        return new WordIndex(text, textStart, synsets, synsetStart, synsetWords);
+    }
+    
+    // private helper method that checks that offsets start at 0, never
+    // decrease and end at the given length
+    private static void checkOffsets(int[] offsets, int length) {
+        if (offsets[0] != 0 || offsets[offsets.length - 1] != length) {
+            throw new IllegalArgumentException();
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            if (offsets[i - 1] > offsets[i]) throw new IllegalArgumentException();
+        }
+    }
+    
+    // approximate number of bytes used by the text, the hash table, the
+    // synset table and the synset arrays of the nouns, counting 16 bytes for
+    // the header of each array; prefix and fuzzy searches need no further
+    // structures
+    public long memoryUsage() {
+        long bytes = text.length + 4L * (textStart.length + table.length + hashes.length)
+            + 4L * (synsetStart.length + synsetWords.length);
+        for (int[] ids : synsets) {
+            bytes += 16 + 4L * (1 + ids.length);
+        }
+        return bytes;
+    }
+}
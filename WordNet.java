@@ -3,178 +3,704 @@
   * 
   *  Description:  Represents a digraph of synsets, in which each synset points
   *  to its hypernym, a more general synset that the current synset belongs to.
+  *  A WordNet is not modified by queries, so one instance may be shared by
+  *  many threads; an optional cache of noun pair results is shared by all of
+  *  them. Synsets and hypernyms can be added in batches while queries run:
+  *  each batch builds new contents from the current ones, reusing whatever
+  *  it does not change, and publishes them at once, so queries never block
+  *  and always see either all of a batch or none of it. Queries can also be
+  *  bounded by a deadline or vertex budget and run asynchronously.
   * 
   *****************************************************************************/
 
-import edu.princeton.cs.algs4.RedBlackBST;
-import edu.princeton.cs.algs4.Bag;
-import edu.princeton.cs.algs4.In;
-import edu.princeton.cs.algs4.Digraph;
 import edu.princeton.cs.algs4.Queue;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
 
 public class WordNet {
     
-    // represents digraph of synsets
-    private Digraph graph;
-    // Symbol Table with words as keys and a bag of integers corresponding to
-    // synset ID's that the word is a part of as the value
-    private RedBlackBST<String, Bag<Integer>> wordToSynsets;
-    // vertex-indexed array (synset IDs) each a string containing the words
-    // in the synset
-    private String[] synsetArray;
-    // object that allows one to calculate the shortest common ancestor between
-    // two vertices in a digraph
-    private ShortestCommonAncestor sca;
+    // identifies a snapshot file, and the version of its layout
+    private static final int SNAPSHOT_MAGIC = 0x574E5350;
+    private static final int SNAPSHOT_VERSION = 2;
+    
+    // the current contents; every query reads this once and works on
+    // what it read, and updates replace it
+    private volatile Version current;
+    // cache of distance and ancestor by noun pair, null when disabled;
+    // read by queries without locking, written only under the lock of this
+    // WordNet
+    private volatile QueryCache cache;
+    // runs asynchronous queries, null for the default executor
+    private volatile Executor executor;
+    // number of bounded queries stopped by their limit; kept here rather
+    // than in the contents, so updates do not reset it
+    private final LongAdder timeouts = new LongAdder();
+    
+    // immutable contents of a WordNet at one point in time
+    private static final class Version {
+        // dictionary with words as keys and an array of the synset ID's that
+        // the word is a part of as the value, which also holds the words of
+        // every synset; every ID is a valid vertex
+        private final WordIndex wordToSynsets;
+        // object that allows one to calculate the shortest common ancestor
+        // between two vertices in a digraph
+        private final ShortestCommonAncestor sca;
+        
+        private Version(WordIndex wordToSynsets, ShortestCommonAncestor sca) {
+            this.wordToSynsets = wordToSynsets;
+            this.sca = sca;
+        }
+        
+        // the string of a synset, decoded from the word index
+        private String synset(int id) {
+            return wordToSynsets.synset(id);
+        }
+        
+        // the synset ID's of a noun
+        private int[] synsetsOf(String noun) {
+            if (noun == null) throw new NullPointerException();
+            int[] ids = wordToSynsets.get(noun);
+            if (ids == null) throw new IllegalArgumentException();
+            return ids;
+        }
+    }
 
    // constructor takes the name of the two input files
     public WordNet(String synsets, String hypernyms) {
+        this(synsets, hypernyms, false);
+    }
+    
+   // constructor takes the name of the two input files and whether to
+   // precompute ancestor labels for faster distance and sca queries
+    public WordNet(String synsets, String hypernyms, boolean useIndex) {
         if (synsets == null || hypernyms == null) throw new NullPointerException();
         
-        In synsetFile = new In(synsets);
-        In hypernymFile = new In(hypernyms);
-        // contains contents of the synset file
-        String[] synsetTemp = synsetFile.readAllLines();
-        // number of sysets in the file
-        int numOfV = synsetTemp.length;
-        
-        // intialize instance variables
-        synsetArray = new String[numOfV];
-        wordToSynsets = new RedBlackBST<String, Bag<Integer>>();
-       
-        // done for each line
-        for (String s : synsetTemp) {
-            String[] temp;
-            String[] wordsInSynset;
-            Bag<Integer> toAdd;
+        // parses both files, skipping glosses since they are never used
+        WordNetParser parser = new WordNetParser(synsets, hypernyms, false);
+        parser.parse();
+        // the parser's array holds the words field of every synset by
+        // synset ID; its strings are dropped once the index holds their text
+        WordIndex wordToSynsets = WordIndex.fromSynsets(parser.synsets());
+        
+        // adds an edge from each synset ID to each of its hypernyms, in the
+        // immutable form the searches run on, so it is not copied again
+        current = new Version(wordToSynsets,
+                              new ShortestCommonAncestor(parser.graph(),
+                                                         useIndex));
+    }
+
+   // constructor takes the contents of a WordNet read back from a snapshot
+    private WordNet(Version contents) {
+        current = contents;
+    }
+   
+   // writes this WordNet to a binary snapshot file that load() can open
+   // much faster than the text files can be parsed. The layout is: magic,
+   // version, graph, word index with the text of the nouns, their synset
+   // ID's and the words of every synset, and the ancestor index if there
+   // is one
+    public void save(String file) {
+        if (file == null) throw new NullPointerException();
+        Version contents = current;
+        WordIndex wordToSynsets = contents.wordToSynsets;
+        ShortestCommonAncestor sca = contents.sca;
+        
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
             
-            // split into three tokens: [synset ID, words, gloss]
-            temp = s.split(",");
+            sca.graph().writeTo(out);
             
-            // bag that holds all the words in a given synset
-            Bag<String> words = new Bag<String>();
-            // different words in a synset are separated by spaces, split
-            wordsInSynset = temp[1].split(" ");
+            wordToSynsets.writeTo(out);
             
-            // stores synset ID as an integer
-            int synsetID = Integer.parseInt(temp[0]);
+            AncestorIndex index = sca.index();
+            out.writeBoolean(index != null);
+            if (index != null) index.writeTo(out);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("could not write " + file, e);
+        }
+    }
+   
+   // opens a snapshot written by save(). The file is memory-mapped, and its
+   // text is copied as is, so nouns and synset strings are only decoded
+   // when returned
+    public static WordNet load(String file) {
+        if (file == null) throw new NullPointerException();
+        
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(Paths.get(file),
+                                                    StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("could not read " + file, e);
+        }
+        
+        try {
+            if (in.getInt() != SNAPSHOT_MAGIC) {
+                throw new IllegalArgumentException(file + " is not a snapshot");
+            }
+            int version = in.getInt();
+            if (version != SNAPSHOT_VERSION) {
+                throw new IllegalArgumentException("unsupported snapshot version "
+                                                       + version);
+            }
             
-            // adds the String of words in the synset to the corresponding
-            // place in the array (by synset ID)
-            synsetArray[synsetID] = temp[1];
+            CompactDigraph graph = CompactDigraph.readFrom(in);
+            int numOfV = graph.V();
             
-            // for each word after the second split (by spaces)
-            for (String word : wordsInSynset) {
-                
-                // create symbol table of words that hold a bag of 
-                // synsetID's that they are found in
-                
-                // if not already in ST
-                if (!wordToSynsets.contains(word)) {
-                    // create a new bag
-                    toAdd = new Bag<Integer>();
-                    // place first integer corresponding to the synset it
-                    // was first encountered in
-                    toAdd.add(synsetID);
-                    
-                    // add to ST
-                    wordToSynsets.put(word, toAdd);
-                    
-                } else {
-                    // add current synset ID to the Bag associated with the word
-                    toAdd = wordToSynsets.get(word);
-                    toAdd.add(synsetID);
-                }
-                
-                // add this word to the bag of this synset
-                words.add(word);
-            } 
-        }
-        
-        // make a new digraph
-        graph = new Digraph(numOfV);
-        
-        // parses in hypernyms file
-        while (hypernymFile.hasNextLine()) {
-            String temp = hypernymFile.readLine();
-            // split each line by comma [synset ID, hypernym 1, ..., hypernym n]
-            String[] tokens = temp.split(",");
-            // first entry is always the synset ID
-            int v = Integer.parseInt(tokens[0]);
-            // for all following tokens, add an edge from current synset ID to
-            // the corresponding synset vertex
-            for (int i = 1; i < tokens.length; i++) {
-                graph.addEdge(v, Integer.parseInt(tokens[i]));       
-            }  
-        }  
-        
-        sca = new ShortestCommonAncestor(graph);
+            WordIndex wordToSynsets = WordIndex.readFrom(in);
+            if (wordToSynsets.V() != numOfV) throw new IllegalArgumentException();
+            
+            AncestorIndex index = null;
+            if (in.get() != 0) index = AncestorIndex.readFrom(in);
+            
+            return new WordNet(new Version(wordToSynsets,
+                                           new ShortestCommonAncestor(graph,
+                                                                      index)));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException(file + " is truncated", e);
+        } catch (IndexOutOfBoundsException | NegativeArraySizeException e) {
+            // any inconsistency the readers do not check for themselves
+            throw new IllegalArgumentException(file + " is corrupt", e);
+        }
     }
-
+   
    // all WordNet nouns
     public Iterable<String> nouns() {
-        return wordToSynsets.keys();
+        return current.wordToSynsets.keys();
     }
 
    // is the word a WordNet noun?
     public boolean isNoun(String word) {
         if (word == null) throw new NullPointerException();
-        return wordToSynsets.contains(word);
+        return current.wordToSynsets.contains(word);
     }
     
-   // a synset (second field of synsets.txt) that is a shortest common ancestor
-   // of noun1 and noun2 (defined below)
-    public String sca(String noun1, String noun2) {
-        if (!isNoun(noun1)) throw new IllegalArgumentException();
-        if (!isNoun(noun2)) throw new IllegalArgumentException();
+   // up to limit nouns starting with the prefix, in sorted order
+    public Iterable<NounMatch> nounsWithPrefix(String prefix, int limit) {
+        WordIndex wordToSynsets = current.wordToSynsets;
+        Queue<NounMatch> matches = new Queue<NounMatch>();
+        for (int i : wordToSynsets.withPrefix(prefix, limit)) {
+            matches.enqueue(new NounMatch(wordToSynsets.word(i),
+                                          wordToSynsets.synsets(i), 0));
+        }
+        return matches;
+    }
+    
+   // up to limit nouns within maxEdits single-character insertions,
+   // deletions or substitutions of the word, closest first; meant for
+   // suggesting nouns for misspelled input
+    public Iterable<NounMatch> similarNouns(String word, int maxEdits, int limit) {
+        WordIndex wordToSynsets = current.wordToSynsets;
+        Queue<NounMatch> matches = new Queue<NounMatch>();
+        for (long match : wordToSynsets.similar(word, maxEdits, limit)) {
+            int i = (int) match;
+            matches.enqueue(new NounMatch(wordToSynsets.word(i),
+                                          wordToSynsets.synsets(i),
+                                          (int) (match >>> 32)));
+        }
+        return matches;
+    }
+    
+   // approximate number of bytes used by each structure of this WordNet;
+   // no strings are kept, the text of the nouns and synsets is in the word
+   // index
+    public String memoryReport() {
+        Version contents = current;
+        WordIndex wordToSynsets = contents.wordToSynsets;
+        ShortestCommonAncestor sca = contents.sca;
+        StringBuilder report = new StringBuilder();
+        report.append("graph: ").append(sca.graph().memoryUsage())
+              .append(" bytes\n");
+        report.append("word index with noun text and synsets (also serves "
+                          + "prefix and fuzzy lookup): ")
+              .append(wordToSynsets.memoryUsage()).append(" bytes\n");
+        AncestorIndex index = sca.index();
+        report.append("ancestor index: ")
+              .append(index == null ? 0 : index.memoryUsage())
+              .append(" bytes\n");
+        report.append("tree LCA table: ").append(sca.tree().memoryUsage())
+              .append(" bytes");
+        return report.toString();
+    }
+    
+   // the index of nouns and their synset ID's
+    WordIndex words() {
+        return current.wordToSynsets;
+    }
+    
+   // the shortest common ancestor searches over the synset digraph
+    ShortestCommonAncestor sca() {
+        return current.sca;
+    }
+    
+   // turns on a cache holding the results of up to capacity noun pairs,
+   // replacing any previous cache; safe to call while queries are running.
+   // Like disableCache() and apply(), it holds the lock of this WordNet, so
+   // an update never brings back a cache that was just turned off
+    public synchronized void enableCache(int capacity) {
+        cache = new QueryCache(capacity);
+    }
+    
+   // sends the statistics of every later distance and sca query that is
+   // not answered by the cache to metrics, or stops if metrics is null
+    public synchronized void setMetrics(QueryMetrics metrics) {
+        current.sca.setMetrics(metrics);
+    }
+    
+   // runs later asynchronous queries on the given executor, or on the
+   // default one (see ShortestCommonAncestor) if executor is null
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+    
+   // number of bounded queries stopped by their deadline or vertex budget,
+   // not counting cancelled ones
+    public long timeouts() {
+        return timeouts.sum();
+    }
+    
+   // turns off the cache
+    public synchronized void disableCache() {
+        cache = null;
+    }
+    
+   // the cache of noun pair results with its hit, miss and eviction counters,
+   // or null if disabled
+    public QueryCache cache() {
+        return cache;
+    }
+   
+   // starts a batch of new synsets and hypernyms based on the current
+   // contents, to be applied with apply()
+    public WordNetUpdate newUpdate() {
+        Version contents = current;
+        return new WordNetUpdate(contents, contents.wordToSynsets.V());
+    }
+   
+   // adds the synsets and hypernyms of a batch all at once, without
+   // blocking queries. Throws an IllegalStateException if another batch was
+   // applied after this one was started, and an IllegalArgumentException,
+   // changing nothing, if a new synset has no hypernym or an edge would
+   // create a cycle
+    public synchronized void apply(WordNetUpdate update) {
+        if (update == null) throw new NullPointerException();
+        Version old = current;
+        if (update.base() != old) {
+            throw new IllegalStateException("update is based on older contents");
+        }
+        ShortestCommonAncestor sca = old.sca;
+        CompactDigraph graph = sca.graph();
+        int oldV = update.baseV();
+        int numOfV = oldV + update.synsets();
+        int numOfE = update.edges();
+        int[] from = update.from();
+        int[] to = update.to();
+        
+        // every new synset needs a hypernym, or it would be a second root
+        boolean[] hasHypernym = new boolean[numOfV - oldV];
+        for (int i = 0; i < numOfE; i++) {
+            if (from[i] >= oldV) hasHypernym[from[i] - oldV] = true;
+        }
+        for (int i = 0; i < hasHypernym.length; i++) {
+            if (!hasHypernym[i]) {
+                throw new IllegalArgumentException("synset " + (oldV + i)
+                                                       + " has no hypernym");
+            }
+        }
         
-        Queue<Integer> noun1sets = new Queue<Integer>();
-        Queue<Integer> noun2sets = new Queue<Integer>();
-        // get an Iterable<Integer> of all synsets that noun1 is in
-        // for each int in the word's associated bag
-        for (int id : wordToSynsets.get(noun1)) {
-            noun1sets.enqueue(id);
+        // an edge u->h creates a cycle exactly when u is already an ancestor
+        // of h, so searches up from h over the old edges and the edges of
+        // the batch before it; the old graph is a DAG, so only the batch can
+        // close one
+        int[] batchHead = new int[numOfV];
+        int[] batchNext = new int[numOfE];
+        Arrays.fill(batchHead, -1);
+        int[] marked = new int[numOfV];
+        int[] queue = new int[numOfV];
+        for (int i = 0; i < numOfE; i++) {
+            int u = from[i];
+            int h = to[i];
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = h;
+            marked[h] = i + 1;
+            while (head < tail) {
+                int x = queue[head++];
+                if (x == u) {
+                    throw new IllegalArgumentException("hypernym edge " + u + "->"
+                                                           + h + " would create a cycle");
+                }
+                if (x < oldV) {
+                    for (int e = graph.adjStart(x); e < graph.adjEnd(x); e++) {
+                        int y = graph.target(e);
+                        if (marked[y] != i + 1) {
+                            marked[y] = i + 1;
+                            queue[tail++] = y;
+                        }
+                    }
+                }
+                for (int j = batchHead[x]; j >= 0; j = batchNext[j]) {
+                    int y = to[j];
+                    if (marked[y] != i + 1) {
+                        marked[y] = i + 1;
+                        queue[tail++] = y;
+                    }
+                }
+            }
+            batchNext[i] = batchHead[u];
+            batchHead[u] = i;
         }
-        // get an Iterable<Integer> of all synsets that noun2 is in
-        for (int id : wordToSynsets.get(noun2)) {
-            noun2sets.enqueue(id);
+        
+        // the adjacency arrays are copied anyway, so the order and depths
+        // are recomputed in one more linear pass; only stale labels are
+        // rebuilt
+        CompactDigraph newGraph = graph.withEdges(numOfV, from, to, numOfE);
+        TopologicalOrder topological = new TopologicalOrder(newGraph);
+        AncestorIndex index = sca.index();
+        if (index != null) index = index.withEdges(newGraph, topological, from, numOfE);
+        
+        // nouns of the new synsets gain their ID's
+        String[] added = new String[numOfV - oldV];
+        boolean nounsChanged = false;
+        for (int i = 0; i < added.length; i++) {
+            added[i] = update.synset(i);
+            for (String word : added[i].split(" ")) {
+                nounsChanged |= old.wordToSynsets.contains(word);
+            }
         }
         
+        ShortestCommonAncestor newSca =
+            new ShortestCommonAncestor(newGraph, topological, index);
+        newSca.setMetrics(sca.metrics());
+        current = new Version(old.wordToSynsets.withSynsets(added), newSca);
+        
+        // cached results stay valid unless an existing synset gained a
+        // hypernym or an existing noun gained a synset; the cache is
+        // replaced only after the new contents are published, see search().
+        // The lock held here keeps enableCache() and disableCache() from
+        // changing the cache in between
+        boolean edgesChanged = false;
+        for (int i = 0; i < numOfE; i++) {
+            edgesChanged |= from[i] < oldV;
+        }
+        QueryCache cached = cache;
+        if (cached != null && (edgesChanged || nounsChanged)) {
+            cache = new QueryCache(cached.capacity());
+        }
+    }
+    
+   // private helper method that finds the distance and ancestor synset ID of
+   // two nouns in the given contents, packed by ShortestCommonAncestor,
+   // using the cache if enabled. The cache must be read before the contents:
+   // an update that changes results replaces the cache after publishing its
+   // contents, so a cache read after the update is never filled from older
+   // contents
+    private long search(QueryCache cached, Version contents,
+                        String noun1, String noun2) {
+        if (cached != null) {
+            if (noun1 == null || noun2 == null) throw new NullPointerException();
+            long result = cached.get(noun1, noun2);
+            if (result != QueryCache.MISS) return result;
+        }
+        ShortestCommonAncestor sca = contents.sca;
+        
+        // arrays of all synsets that noun1 and noun2 are in; the ID's were
+        // validated when the arrays were built. The lookup is only timed
+        // when metrics are collected
+        boolean timed = sca.metrics() != null;
+        long start = timed ? System.nanoTime() : 0;
+        int[] noun1sets = contents.synsetsOf(noun1);
+        int[] noun2sets = contents.synsetsOf(noun2);
+        long lookupNanos = timed ? System.nanoTime() - start : 0;
+        long result = sca.searchValidated(noun1sets, noun2sets, lookupNanos);
+        
+        if (cached != null) cached.put(noun1, noun2, result);
+        return result;
+    }
+    
+   // a synset (second field of synsets.txt) that is a shortest common ancestor
+   // of noun1 and noun2 (defined below)
+    public String sca(String noun1, String noun2) {
+        QueryCache cached = cache;
+        Version contents = current;
         // return the ancestor's synset string
-        return synsetArray[sca.ancestor(noun1sets, noun2sets)];
+        long result = search(cached, contents, noun1, noun2);
+        return contents.synset(ShortestCommonAncestor.resultAnc(result));
     }
 
     // distance between noun1 and noun2 (defined below)
     public int distance(String noun1, String noun2) {
-        if (!isNoun(noun1)) throw new IllegalArgumentException();
-        if (!isNoun(noun2)) throw new IllegalArgumentException();
+        // compute and return the length between the set of synsets
+        QueryCache cached = cache;
+        return ShortestCommonAncestor.resultDist(search(cached, current,
+                                                        noun1, noun2));
+    }
+    
+   // matrix of the distances between every pair of the given nouns. Runs one
+   // BFS from the synsets of each noun and joins the resulting ancestor
+   // lists for each pair, computing each symmetric pair once; rows are
+   // computed in parallel on the common fork-join pool
+    public int[][] distanceMatrix(String[] nouns) {
+        if (nouns == null) throw new NullPointerException();
+        int n = nouns.length;
+        Version contents = current;
+        ShortestCommonAncestor sca = contents.sca;
+        
+        // checks every noun before doing any work
+        int[][] synsets = new int[n][];
+        for (int i = 0; i < n; i++) {
+            synsets[i] = contents.synsetsOf(nouns[i]);
+        }
+        
+        // every ancestor of each noun, with its distance
+        long[][] ancestors = new long[n][];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            ancestors[i] = sca.ancestorsValidated(synsets[i]);
+        });
         
-        Queue<Integer> noun1sets = new Queue<Integer>();
-        Queue<Integer> noun2sets = new Queue<Integer>();
-        // get an Iterable<Integer> of all synsets that noun1 is in
-        // for each int in the word's associated bag
-        for (int id : wordToSynsets.get(noun1)) {
-            noun1sets.enqueue(id);
+        // fills the upper triangle and mirrors it; the diagonal stays 0
+        int[][] distances = new int[n][n];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            for (int j = i + 1; j < n; j++) {
+                int dist = ShortestCommonAncestor.resultDist(
+                               ShortestCommonAncestor.join(ancestors[i],
+                                                           ancestors[j]));
+                distances[i][j] = dist;
+                distances[j][i] = dist;
+            }
+        });
+        return distances;
+    }
+    
+   // distances between many pairs of nouns, nouns1[i] and nouns2[i], for
+   // offline jobs; pairs are searched 64 at a time by a bit-parallel BFS,
+   // and the cache is neither read nor filled
+    public int[] distances(String[] nouns1, String[] nouns2) {
+        if (nouns1 == null || nouns2 == null) throw new NullPointerException();
+        if (nouns1.length != nouns2.length) throw new IllegalArgumentException();
+        int n = nouns1.length;
+        Version contents = current;
+        
+        // checks every noun before doing any work
+        int[][] synsets1 = new int[n][];
+        int[][] synsets2 = new int[n][];
+        for (int i = 0; i < n; i++) {
+            synsets1[i] = contents.synsetsOf(nouns1[i]);
+            synsets2[i] = contents.synsetsOf(nouns2[i]);
+        }
+        
+        long[] results = contents.sca.batchValidated(synsets1, synsets2);
+        int[] distances = new int[n];
+        for (int i = 0; i < n; i++) {
+            distances[i] = ShortestCommonAncestor.resultDist(results[i]);
+        }
+        return distances;
+    }
+   
+   // Wu-Palmer similarity of noun1 and noun2, between 0 and 1, from the same
+   // single search as distance() and the depths of the synset digraph found
+   // when it was built; where ancestors tie, the one the search found is
+   // used
+    public double wuPalmer(String noun1, String noun2) {
+        QueryCache cached = cache;
+        Version contents = current;
+        return contents.sca.wuPalmer(search(cached, contents, noun1, noun2));
+    }
+    
+   // Leacock-Chodorow similarity of noun1 and noun2, from a single search
+    public double leacockChodorow(String noun1, String noun2) {
+        QueryCache cached = cache;
+        Version contents = current;
+        return contents.sca.leacockChodorow(search(cached, contents,
+                                                   noun1, noun2));
+    }
+    
+   // Wu-Palmer similarity of a noun to each of the candidates, for ranking
+   // them; see similarities()
+    public double[] wuPalmer(String noun, String[] candidates) {
+        Version contents = current;
+        long[] results = similarities(contents, noun, candidates);
+        double[] scores = new double[results.length];
+        for (int i = 0; i < results.length; i++) {
+            scores[i] = contents.sca.wuPalmer(results[i]);
         }
-        // get an Iterable<Integer> of all synsets that noun2 is in
-        for (int id : wordToSynsets.get(noun2)) {
-            noun2sets.enqueue(id);
+        return scores;
+    }
+    
+   // Leacock-Chodorow similarity of a noun to each of the candidates
+    public double[] leacockChodorow(String noun, String[] candidates) {
+        Version contents = current;
+        long[] results = similarities(contents, noun, candidates);
+        double[] scores = new double[results.length];
+        for (int i = 0; i < results.length; i++) {
+            scores[i] = contents.sca.leacockChodorow(results[i]);
         }
+        return scores;
+    }
+    
+   // private helper method that finds the distance and ancestor of a noun
+   // and each candidate, packed, by the same search as single queries, so
+   // scores match theirs. The noun is looked up once and candidates are
+   // searched in parallel on the common fork-join pool; the cache is
+   // neither read nor filled
+    private long[] similarities(Version contents, String noun, String[] candidates) {
+        if (candidates == null) throw new NullPointerException();
         
-        // compute and return the length between the set of synsets
-        return sca.length(noun1sets, noun2sets);
+        // checks every noun before doing any work
+        int[] sources = contents.synsetsOf(noun);
+        int[][] synsets = new int[candidates.length][];
+        for (int i = 0; i < candidates.length; i++) {
+            synsets[i] = contents.synsetsOf(candidates[i]);
+        }
+        
+        ShortestCommonAncestor sca = contents.sca;
+        long[] results = new long[candidates.length];
+        IntStream.range(0, candidates.length).parallel().forEach(i -> {
+            results[i] = sca.searchValidated(sources, synsets[i]);
+        });
+        return results;
+    }
+    
+   // the k nouns closest to the given noun, in order of their distance to it;
+   // nouns at the same distance are in no particular order. Explores the
+   // graph only as far as needed to find k nouns
+    public Iterable<String> nearest(String noun, int k) {
+        Version contents = current;
+        int[] sources = contents.synsetsOf(noun);
+        if (k <= 0) throw new IllegalArgumentException();
+        
+        // nouns are tracked by word ID, and only the k returned are decoded
+        WordIndex words = contents.wordToSynsets;
+        Queue<String> closest = new Queue<String>();
+        HashSet<Integer> seen = new HashSet<Integer>();
+        seen.add(words.indexOf(noun));
+        
+        // synsets are visited in order of distance, so the first time a noun
+        // is seen is at its distance
+        contents.sca.nearestValidated(sources, (v, dist) -> {
+            for (int j = 0; j < words.synsetSize(v); j++) {
+                int word = words.synsetWord(v, j);
+                if (seen.add(word)) {
+                    closest.enqueue(words.word(word));
+                    if (closest.size() == k) return false;
+                }
+            }
+            return true;
+        });
+        return closest;
+    }
+    
+   // distance between noun1 and noun2 and their shortest common ancestor
+   // synset, found by a single search
+    public AncestorResult query(String noun1, String noun2) {
+        QueryCache cached = cache;
+        Version contents = current;
+        long result = search(cached, contents, noun1, noun2);
+        int ancestor = ShortestCommonAncestor.resultAnc(result);
+        return new AncestorResult(ShortestCommonAncestor.resultDist(result),
+                                  ancestor, null, contents.synset(ancestor));
+    }
+    
+   // distance between noun1 and noun2 and their shortest common ancestor
+   // synset, found within the limit; if the limit stops the search first,
+   // the result is an upper bound and not exact, see AncestorResult.isExact()
+    public AncestorResult query(String noun1, String noun2, SearchLimit limit) {
+        if (limit == null) throw new NullPointerException();
+        QueryCache cached = cache;
+        Version contents = current;
+        int[] noun1sets = contents.synsetsOf(noun1);
+        int[] noun2sets = contents.synsetsOf(noun2);
+        return search(cached, contents, noun1, noun2, noun1sets, noun2sets, limit);
+    }
+    
+   // starts a query of noun1 and noun2 within the limit on the executor;
+   // the nouns are checked, and the cache read, before it starts, so a
+   // cached pair completes at once. Cancelling the future stops the search
+    public CompletableFuture<AncestorResult> queryAsync(String noun1, String noun2,
+                                                        SearchLimit limit) {
+        if (limit == null) throw new NullPointerException();
+        QueryCache cached = cache;
+        Version contents = current;
+        int[] noun1sets = contents.synsetsOf(noun1);
+        int[] noun2sets = contents.synsetsOf(noun2);
+        if (cached != null) {
+            long result = cached.get(noun1, noun2);
+            if (result != QueryCache.MISS) {
+                return CompletableFuture.completedFuture(answer(contents, result, true));
+            }
+        }
+        return ShortestCommonAncestor.submit(
+            () -> search(cached, contents, noun1, noun2, noun1sets, noun2sets, limit),
+            limit, executor);
+    }
+    
+   // private helper method that answers a bounded query of two nouns whose
+   // synsets were already looked up. Only exact results are cached, so a
+   // later query with more time can still find the exact answer
+    private AncestorResult search(QueryCache cached, Version contents,
+                                  String noun1, String noun2,
+                                  int[] noun1sets, int[] noun2sets, SearchLimit limit) {
+        if (cached != null) {
+            long result = cached.get(noun1, noun2);
+            if (result != QueryCache.MISS) return answer(contents, result, true);
+        }
+        AncestorResult found = contents.sca.searchValidated(noun1sets, noun2sets,
+                                                            limit, 0);
+        long result = ShortestCommonAncestor.result(found.distance(), found.ancestor());
+        if (found.isExact()) {
+            if (cached != null) cached.put(noun1, noun2, result);
+        } else if (!limit.isCancelled()) {
+            timeouts.increment();
+        }
+        return answer(contents, result, found.isExact());
+    }
+    
+   // private helper method that turns a packed result into an AncestorResult
+   // with the ancestor's synset string
+    private static AncestorResult answer(Version contents, long result, boolean exact) {
+        int ancestor = ShortestCommonAncestor.resultAnc(result);
+        return new AncestorResult(ShortestCommonAncestor.resultDist(result), ancestor,
+                                  null, contents.synset(ancestor), exact);
     }
     
    // do unit testing of this class
     
     public static void main(String[] args) {
-        WordNet test = new WordNet(args[0], args[1]);
+        // an optional third argument "index" enables the ancestor labels
+        boolean useIndex = args.length > 2 && args[2].equals("index");
+        WordNet test = new WordNet(args[0], args[1], useIndex);
+        
+        if (useIndex) {
+            AncestorIndex index = test.sca().index();
+            System.out.println("Ancestor index: built in " + index.buildTime()
+                                   + " ms, " + index.size() + " entries, "
+                                   + index.memoryUsage() + " bytes");
+            System.out.println();
+        }
         
         // prints out the graph created (used for testing)
         // System.out.println(test.graph);
         
-        // prints out the height of the BST created (make sure not empty)
-        System.out.println("Height of our synset BST: " 
-                               + test.wordToSynsets.height());
+        // prints out the size of the word index created (make sure not empty)
+        System.out.println("Number of nouns in our word index: " 
+                               + test.words().size());
         System.out.println();
         
         System.out.println("Test length function:");
@@ -192,5 +718,33 @@ public class WordNet {
         System.out.println("Common ancestor between " + test3 + " and " 
                                + test4 + ": " + test.sca(test3, test4));
         System.out.println();
+        
+        System.out.println("Test fuzzy lookup:");
+        System.out.println("Nouns close to 'indivdual': "
+                               + test.similarNouns("indivdual", 2, 5));
+        System.out.println();
+        
+        System.out.println(test.memoryReport());
+        System.out.println();
+        
+        System.out.println("Test similarity:");
+        System.out.println(test3 + ", " + test4 + ": Wu-Palmer "
+                               + test.wuPalmer(test3, test4) + ", Leacock-Chodorow "
+                               + test.leacockChodorow(test3, test4));
+        System.out.println();
+        
+        System.out.println("Test combined query:");
+        System.out.println(test3 + ", " + test4 + ": "
+                               + test.query(test3, test4));
+        System.out.println();
+        
+        System.out.println("Test bounded query:");
+        System.out.println(test1 + ", " + test2 + " within 2 vertices: "
+                               + test.query(test1, test2, SearchLimit.vertices(2)));
+        System.out.println(test1 + ", " + test2 + " within 1 second: "
+                               + test.queryAsync(test1, test2, SearchLimit.within(
+                                     1, TimeUnit.SECONDS)).join());
+        System.out.println("Timed out queries: " + test.timeouts());
+        System.out.println();
     }
 }
\ No newline at end of file
@@ -0,0 +1,271 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  Benchmarks WordNet construction, isNoun, distance and sca
+  *  on random, near-leaf and polysemous noun pairs, ShortestCommonAncestor
+  *  single and subset queries, and Outcast on lists of several sizes. Runs
+  *  on the given data files, or on files made by SyntheticWordNet. Each
+  *  benchmark is warmed up, then timed in batches of operations, and reports
+  *  its throughput, percentiles of the time per operation over the batches,
+  *  the bytes allocated per operation by the benchmark thread (work done on
+  *  the fork-join pool is not counted), and the garbage collections it
+  *  caused, so regressions in the search path show up in any of them.
+  * 
+  *****************************************************************************/
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+public class WordNetBenchmark {
+    
+    // nanoseconds spent warming up and measuring each benchmark
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final long MEASURE_NANOS = 2_000_000_000L;
+    // fewest batches measured, however long they take
+    private static final int MIN_BATCHES = 10;
+    // number of inputs each query benchmark cycles through
+    private static final int INPUTS = 1 << 12;
+    
+    // a benchmarked operation; i counts the calls, for picking an input
+    private interface Operation {
+        long run(int i);
+    }
+    
+    // results are folded into this so no call can be optimized away
+    private static volatile long sink;
+    
+    // counts bytes allocated by a thread, if the JVM supports it
+    private static final com.sun.management.ThreadMXBean THREADS =
+        ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+            ? (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()
+            : null;
+    
+    // number of garbage collections and milliseconds spent in them so far
+    private static long[] gcTotals() {
+        long count = 0;
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[] { count, time };
+    }
+    
+    // bytes allocated by this thread so far, or -1 if not supported
+    private static long allocatedBytes() {
+        if (THREADS == null) return -1;
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    
+    // warms up and measures an operation, timing batch calls at a time, and
+    // prints one line of results
+    private static void measure(String name, int batch, Operation operation) {
+        long total = 0;
+        int i = 0;
+        
+        // warmup, so the measured calls run compiled code
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < WARMUP_NANOS) {
+            for (int j = 0; j < batch; j++) {
+                total += operation.run(i++);
+            }
+        }
+        
+        long[] batchNanos = new long[1024];
+        int batches = 0;
+        long[] gcBefore = gcTotals();
+        long bytesBefore = allocatedBytes();
+        start = System.nanoTime();
+        long now = start;
+        while (now - start < MEASURE_NANOS || batches < MIN_BATCHES) {
+            long batchStart = now;
+            for (int j = 0; j < batch; j++) {
+                total += operation.run(i++);
+            }
+            now = System.nanoTime();
+            if (batches == batchNanos.length) {
+                batchNanos = Arrays.copyOf(batchNanos, 2 * batches);
+            }
+            batchNanos[batches++] = now - batchStart;
+        }
+        long elapsed = now - start;
+        long bytesAfter = allocatedBytes();
+        long[] gcAfter = gcTotals();
+        sink += total;
+        
+        long operations = (long) batches * batch;
+        Arrays.sort(batchNanos, 0, batches);
+        StringBuilder line = new StringBuilder();
+        line.append(String.format("%-32s %12.1f ops/s", name,
+                                  operations * 1e9 / elapsed));
+        line.append(String.format("  p50 %s  p90 %s  p99 %s  max %s",
+                                  time(percentile(batchNanos, batches, 0.50), batch),
+                                  time(percentile(batchNanos, batches, 0.90), batch),
+                                  time(percentile(batchNanos, batches, 0.99), batch),
+                                  time(batchNanos[batches - 1], batch)));
+        if (bytesBefore >= 0) {
+            line.append(String.format("  %10.1f B/op",
+                                      (double) (bytesAfter - bytesBefore) / operations));
+        }
+        line.append(String.format("  gc %d (%d ms)", gcAfter[0] - gcBefore[0],
+                                  gcAfter[1] - gcBefore[1]));
+        System.out.println(line);
+    }
+    
+    // the given fraction of the sorted batch times
+    private static long percentile(long[] sorted, int n, double fraction) {
+        return sorted[Math.min(n - 1, (int) (fraction * n))];
+    }
+    
+    // time of one operation of a batch, in convenient units
+    private static String time(long batchNanos, int batch) {
+        double nanos = (double) batchNanos / batch;
+        if (nanos < 1e3) return String.format("%7.1f ns", nanos);
+        if (nanos < 1e6) return String.format("%7.1f us", nanos / 1e3);
+        return String.format("%7.1f ms", nanos / 1e6);
+    }
+    
+    // builds INPUTS pairs of nouns drawn from the candidates
+    private static String[][] pairs(String[] candidates, Random random) {
+        String[][] pairs = new String[INPUTS][];
+        for (int i = 0; i < INPUTS; i++) {
+            pairs[i] = new String[] {
+                candidates[random.nextInt(candidates.length)],
+                candidates[random.nextInt(candidates.length)]
+            };
+        }
+        return pairs;
+    }
+    
+    // runs every benchmark; the arguments are either the synsets and
+    // hypernyms files, or "synthetic" and a number of synsets
+    public static void main(String[] args) {
+        String synsets;
+        String hypernyms;
+        if (args[0].equals("synthetic")) {
+            int numOfV = args.length > 1 ? Integer.parseInt(args[1]) : 82192;
+            String[] files = new SyntheticWordNet(numOfV, 0.02, 0.1, 1)
+                                 .writeTemporary();
+            synsets = files[0];
+            hypernyms = files[1];
+        } else {
+            synsets = args[0];
+            hypernyms = args[1];
+        }
+        if (THREADS != null && THREADS.isThreadAllocatedMemorySupported()) {
+            THREADS.setThreadAllocatedMemoryEnabled(true);
+        }
+        
+        measure("WordNet construction", 1,
+                i -> new WordNet(synsets, hypernyms).words().size());
+        
+        WordNet wordnet = new WordNet(synsets, hypernyms);
+        WordIndex words = wordnet.words();
+        ShortestCommonAncestor sca = wordnet.sca();
+        CompactDigraph graph = sca.graph();
+        System.out.println(wordnet.memoryReport());
+        System.out.println();
+        
+        // every noun; nouns of synsets without hyponyms; nouns in at least
+        // three synsets
+        String[] all = new String[words.size()];
+        ArrayList<String> leaves = new ArrayList<String>();
+        ArrayList<String> polysemous = new ArrayList<String>();
+        for (int i = 0; i < words.size(); i++) {
+            all[i] = words.word(i);
+            int[] ids = words.synsets(i);
+            boolean leaf = true;
+            for (int id : ids) {
+                if (graph.indegree(id) > 0) leaf = false;
+            }
+            if (leaf) leaves.add(all[i]);
+            if (ids.length >= 3) polysemous.add(all[i]);
+        }
+        if (leaves.isEmpty()) leaves.addAll(Arrays.asList(all));
+        if (polysemous.isEmpty()) polysemous.addAll(Arrays.asList(all));
+        
+        Random random = new Random(1);
+        String[][] randomPairs = pairs(all, random);
+        String[][] leafPairs = pairs(leaves.toArray(new String[0]), random);
+        String[][] polysemousPairs = pairs(polysemous.toArray(new String[0]), random);
+        int mask = INPUTS - 1;
+        
+        // half of the looked up words are nouns
+        String[] lookups = new String[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            String noun = all[random.nextInt(all.length)];
+            lookups[i] = (i % 2 == 0) ? noun : noun + "_";
+        }
+        measure("isNoun", 1024, i -> wordnet.isNoun(lookups[i & mask]) ? 1 : 0);
+        
+        measure("distance, random pairs", 16, i -> {
+            String[] pair = randomPairs[i & mask];
+            return wordnet.distance(pair[0], pair[1]);
+        });
+        // the same with metrics collected, to show their overhead
+        HistogramMetrics metrics = new HistogramMetrics();
+        wordnet.setMetrics(metrics);
+        measure("distance, random pairs, metrics", 16, i -> {
+            String[] pair = randomPairs[i & mask];
+            return wordnet.distance(pair[0], pair[1]);
+        });
+        wordnet.setMetrics(null);
+        System.out.println(metrics);
+        System.out.println();
+        
+        measure("distance, near-leaf pairs", 16, i -> {
+            String[] pair = leafPairs[i & mask];
+            return wordnet.distance(pair[0], pair[1]);
+        });
+        measure("distance, polysemous pairs", 16, i -> {
+            String[] pair = polysemousPairs[i & mask];
+            return wordnet.distance(pair[0], pair[1]);
+        });
+        measure("sca, random pairs", 16, i -> {
+            String[] pair = randomPairs[i & mask];
+            return wordnet.sca(pair[0], pair[1]).length();
+        });
+        
+        // single vertices and subsets of up to 8 vertices
+        int numOfV = graph.V();
+        int[][] vertexPairs = new int[INPUTS][];
+        int[][][] subsetPairs = new int[INPUTS][2][];
+        for (int i = 0; i < INPUTS; i++) {
+            vertexPairs[i] = new int[] { random.nextInt(numOfV), random.nextInt(numOfV) };
+            for (int side = 0; side < 2; side++) {
+                int[] subset = new int[1 + random.nextInt(8)];
+                for (int j = 0; j < subset.length; j++) {
+                    subset[j] = random.nextInt(numOfV);
+                }
+                subsetPairs[i][side] = subset;
+            }
+        }
+        measure("SCA length, single vertices", 16, i -> {
+            int[] pair = vertexPairs[i & mask];
+            return sca.length(pair[0], pair[1]);
+        });
+        measure("SCA length, subsets", 16, i -> {
+            int[][] pair = subsetPairs[i & mask];
+            return sca.length(pair[0], pair[1]);
+        });
+        
+        Outcast outcast = new Outcast(wordnet);
+        for (int size : new int[] { 5, 10, 25 }) {
+            String[][] lists = new String[256][size];
+            for (String[] list : lists) {
+                for (int j = 0; j < size; j++) {
+                    list[j] = all[random.nextInt(all.length)];
+                }
+            }
+            measure("Outcast, " + size + " nouns", 1,
+                    i -> outcast.outcast(lists[i & 255]).length());
+        }
+        
+        // printed so the results are used
+        System.out.println();
+        System.out.println("checksum " + sink);
+    }
+}
@@ -0,0 +1,368 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  Streaming parser for the synsets and hypernyms files.
+  *  Reads each file through a buffered file channel and splits lines on
+  *  commas and spaces by scanning bytes, without regular expressions or
+  *  reading the whole file into memory. Both files are parsed in parallel,
+  *  and malformed lines are reported with their file name and line number.
+  * 
+  *****************************************************************************/
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+public class WordNetParser {
+    
+    // size of the buffer each file is read through
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    // names of the two input files
+    private final String synsetsFile;
+    private final String hypernymsFile;
+    // whether glosses are kept, they are skipped otherwise
+    private final boolean keepGlosses;
+    
+    // number of synsets parsed
+    private int numOfV;
+    // synset-ID-indexed words field of each synset
+    private String[] synsets;
+    // synset-ID-indexed glosses, null unless kept
+    private String[] glosses;
+    
+    // number of hypernym edges parsed
+    private int numOfE;
+    // edge-indexed sources and targets of the hypernym edges, and the line
+    // each edge was read from
+    private int[] from;
+    private int[] to;
+    private int[] edgeLine;
+    
+    // constructor takes the names of the two input files and whether to
+    // keep the gloss of each synset
+    public WordNetParser(String synsets, String hypernyms, boolean keepGlosses) {
+        if (synsets == null || hypernyms == null) throw new NullPointerException();
+        this.synsetsFile = synsets;
+        this.hypernymsFile = hypernyms;
+        this.keepGlosses = keepGlosses;
+    }
+    
+    // parses both files, the hypernyms file on another thread while this
+    // thread parses the synsets file. If both files are malformed, the
+    // error in the synsets file is the one thrown
+    public void parse() {
+        CompletableFuture<Void> hypernymTask =
+            CompletableFuture.runAsync(() -> parseHypernyms());
+        try {
+            parseSynsets();
+        } catch (RuntimeException e) {
+            // waits for the other thread, so it never outlives the parse
+            try {
+                hypernymTask.join();
+            } catch (CompletionException other) {
+                e.addSuppressed(other.getCause());
+            }
+            throw e;
+        }
+        try {
+            hypernymTask.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        
+        // only now is the number of synsets known, so edges are checked last
+        for (int i = 0; i < numOfE; i++) {
+            if (from[i] >= numOfV || to[i] >= numOfV) {
+                throw error(hypernymsFile, edgeLine[i],
+                            "synset ID out of range (" + numOfV + " synsets)");
+            }
+        }
+        edgeLine = null;
+    }
+    
+    // parses lines of the form: synset ID, words separated by spaces, gloss
+    private void parseSynsets() {
+        synsets = new String[1024];
+        if (keepGlosses) glosses = new String[1024];
+        
+        LineReader in = new LineReader(synsetsFile);
+        try {
+            while (in.nextLine()) {
+                byte[] line = in.line;
+                int length = in.length;
+                if (length == 0) continue;
+                
+                // the words field ends at the second comma; the gloss may
+                // contain further commas
+                int idEnd = indexOf(line, 0, length, (byte) ',');
+                if (idEnd < 0) {
+                    throw error(synsetsFile, in.lineNumber,
+                                "expected synset ID, words and gloss");
+                }
+                int wordsEnd = indexOf(line, idEnd + 1, length, (byte) ',');
+                if (wordsEnd < 0) wordsEnd = length;
+                if (wordsEnd == idEnd + 1) {
+                    throw error(synsetsFile, in.lineNumber, "synset has no words");
+                }
+                
+                // ID's must be exactly 0 to numOfV - 1, so one at least as
+                // large as the file is malformed; this keeps a bad ID from
+                // growing the arrays past the size of the input
+                int id = parseInt(line, 0, idEnd, synsetsFile, in.lineNumber);
+                if (id >= in.size) {
+                    throw error(synsetsFile, in.lineNumber,
+                                "synset ID " + id + " out of range");
+                }
+                if (id >= synsets.length) {
+                    int capacity = (int) Math.min(Math.max(id + 1, 2L * synsets.length),
+                                                  in.size);
+                    synsets = Arrays.copyOf(synsets, capacity);
+                    if (keepGlosses) glosses = Arrays.copyOf(glosses, capacity);
+                }
+                if (synsets[id] != null) {
+                    throw error(synsetsFile, in.lineNumber,
+                                "duplicate synset ID " + id);
+                }
+                
+                synsets[id] = new String(line, idEnd + 1, wordsEnd - idEnd - 1,
+                                         StandardCharsets.UTF_8);
+                if (keepGlosses && wordsEnd < length) {
+                    glosses[id] = new String(line, wordsEnd + 1,
+                                             length - wordsEnd - 1,
+                                             StandardCharsets.UTF_8);
+                }
+                numOfV++;
+            }
+        } finally {
+            in.close();
+        }
+        
+        // synset ID's must be exactly 0 to numOfV - 1
+        for (int id = 0; id < numOfV; id++) {
+            if (id >= synsets.length || synsets[id] == null) {
+                throw new IllegalArgumentException(synsetsFile
+                                                       + ": missing synset ID "
+                                                       + id);
+            }
+        }
+        synsets = Arrays.copyOf(synsets, numOfV);
+        if (keepGlosses) glosses = Arrays.copyOf(glosses, numOfV);
+    }
+    
+    // parses lines of the form: synset ID, hypernym 1, ..., hypernym n; a
+    // trailing comma is allowed, as it always has been
+    private void parseHypernyms() {
+        from = new int[1024];
+        to = new int[1024];
+        edgeLine = new int[1024];
+        
+        LineReader in = new LineReader(hypernymsFile);
+        try {
+            while (in.nextLine()) {
+                byte[] line = in.line;
+                int length = in.length;
+                if (length == 0) continue;
+                
+                int end = indexOf(line, 0, length, (byte) ',');
+                if (end < 0) end = length;
+                int v = parseInt(line, 0, end, hypernymsFile, in.lineNumber);
+                
+                // one edge for each following token
+                while (end < length) {
+                    int start = end + 1;
+                    if (start == length) break;
+                    end = indexOf(line, start, length, (byte) ',');
+                    if (end < 0) end = length;
+                    int w = parseInt(line, start, end, hypernymsFile,
+                                     in.lineNumber);
+                    
+                    if (numOfE == from.length) {
+                        from = Arrays.copyOf(from, 2 * numOfE);
+                        to = Arrays.copyOf(to, 2 * numOfE);
+                        edgeLine = Arrays.copyOf(edgeLine, 2 * numOfE);
+                    }
+                    from[numOfE] = v;
+                    to[numOfE] = w;
+                    edgeLine[numOfE] = in.lineNumber;
+                    numOfE++;
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+    
+    // index of the first b in line[from, to), or -1
+    private static int indexOf(byte[] line, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (line[i] == b) return i;
+        }
+        return -1;
+    }
+    
+    // parses the non-negative decimal integer line[from, to)
+    private static int parseInt(byte[] line, int from, int to,
+                                String file, int lineNumber) {
+        if (from == to) throw error(file, lineNumber, "empty synset ID");
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw error(file, lineNumber, "invalid synset ID '"
+                                + new String(line, from, to - from,
+                                             StandardCharsets.UTF_8) + "'");
+            }
+            if (value > (Integer.MAX_VALUE - digit) / 10) {
+                throw error(file, lineNumber, "synset ID too large");
+            }
+            value = 10 * value + digit;
+        }
+        return value;
+    }
+    
+    // exception describing a malformed line
+    private static IllegalArgumentException error(String file, int lineNumber,
+                                                  String message) {
+        return new IllegalArgumentException(file + ":" + lineNumber + ": "
+                                                + message);
+    }
+    
+    // number of synsets
+    public int V() {
+        return numOfV;
+    }
+    
+    // the words field of a synset
+    public String synset(int id) {
+        return synsets[id];
+    }
+    
+    // synset-ID-indexed array of the words field of every synset
+    public String[] synsets() {
+        return synsets;
+    }
+    
+    // the gloss of a synset, or null if glosses were not kept
+    public String gloss(int id) {
+        if (glosses == null) return null;
+        return glosses[id];
+    }
+    
+    // number of hypernym edges
+    public int E() {
+        return numOfE;
+    }
+    
+    // source synset of an edge
+    public int from(int edge) {
+        return from[edge];
+    }
+    
+    // hypernym synset of an edge
+    public int to(int edge) {
+        return to[edge];
+    }
+    
+    // the hypernym edges as a compact digraph over the synset ID's, built
+    // straight from the parsed edge arrays
+    public CompactDigraph graph() {
+        return new CompactDigraph(numOfV, from, to, numOfE);
+    }
+    
+    // reads a file line by line through a fixed buffer, keeping the bytes of
+    // the current line without its line terminator
+    private static class LineReader {
+        private final String file;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private boolean endOfFile;
+        // size of the file in bytes
+        private final long size;
+        
+        // bytes of the current line, and its number starting at 1
+        private byte[] line = new byte[256];
+        private int length;
+        private int lineNumber;
+        
+        private LineReader(String file) {
+            this.file = file;
+            try {
+                channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+                size = channel.size();
+            } catch (IOException e) {
+                throw new IllegalArgumentException("could not open " + file, e);
+            }
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.flip();
+        }
+        
+        // reads the next line, returns false at the end of the file
+        private boolean nextLine() {
+            length = 0;
+            boolean sawAny = false;
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    if (endOfFile || !fill()) {
+                        if (!sawAny) return false;
+                        break;
+                    }
+                }
+                byte b = buffer.get();
+                sawAny = true;
+                if (b == '\n') break;
+                if (length == line.length) line = Arrays.copyOf(line, 2 * length);
+                line[length++] = b;
+            }
+            // drops the carriage return of Windows line endings
+            if (length > 0 && line[length - 1] == '\r') length--;
+            lineNumber++;
+            return true;
+        }
+        
+        // refills the buffer, returns false if nothing more could be read
+        private boolean fill() {
+            buffer.clear();
+            try {
+                int read;
+                do {
+                    read = channel.read(buffer);
+                } while (read == 0);
+                buffer.flip();
+                if (read < 0) {
+                    endOfFile = true;
+                    return false;
+                }
+                return true;
+            } catch (IOException e) {
+                throw new IllegalArgumentException("could not read " + file, e);
+            }
+        }
+        
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new IllegalArgumentException("could not close " + file, e);
+            }
+        }
+    }
+    
+    // do unit testing of this class
+    public static void main(String[] args) {
+        WordNetParser parser = new WordNetParser(args[0], args[1], true);
+        parser.parse();
+        System.out.println(parser.V() + " synsets, " + parser.E() + " edges");
+        System.out.println("synset 0: " + parser.synset(0));
+        System.out.println("gloss 0: " + parser.gloss(0));
+    }
+}
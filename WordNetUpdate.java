@@ -0,0 +1,105 @@
+/******************************************************************************
+  *  Name:    Greg Umali
+  * 
+  *  Description:  A batch of new synsets and hypernym edges for a WordNet,
+  *  started by WordNet.newUpdate() and applied all at once by
+  *  WordNet.apply(). New synsets get the synset ID's following the last
+  *  synset of the WordNet, in the order they are added, and edges may join
+  *  any existing or new synsets. Nothing is checked against the graph until
+  *  the batch is applied.
+  * 
+  *****************************************************************************/
+
+import java.util.Arrays;
+
+public class WordNetUpdate {
+    
+    // the WordNet contents this batch was started from, to detect updates
+    // applied in the meantime, and its number of synsets
+    private final Object base;
+    private final int baseV;
+    
+    // words field of each new synset, by synset ID - baseV
+    private String[] synsets = new String[4];
+    private int numOfSynsets;
+    
+    // sources and targets of the new hypernym edges
+    private int[] from = new int[4];
+    private int[] to = new int[4];
+    private int numOfEdges;
+    
+    // constructor takes the contents the batch is based on and their number
+    // of synsets
+    WordNetUpdate(Object base, int baseV) {
+        this.base = base;
+        this.baseV = baseV;
+    }
+    
+    // adds a synset with the given nouns, separated by single spaces, and
+    // returns its synset ID
+    public int addSynset(String words) {
+        if (words == null) throw new NullPointerException();
+        if (words.isEmpty() || words.startsWith(" ") || words.endsWith(" ")
+                || words.contains("  ") || words.indexOf(',') >= 0) {
+            throw new IllegalArgumentException("malformed synset \"" + words + "\"");
+        }
+        if (numOfSynsets == synsets.length) {
+            synsets = Arrays.copyOf(synsets, 2 * numOfSynsets);
+        }
+        synsets[numOfSynsets] = words;
+        return baseV + numOfSynsets++;
+    }
+    
+    // adds an edge from a synset to one of its hypernyms
+    public void addHypernym(int synset, int hypernym) {
+        int numOfV = baseV + numOfSynsets;
+        if (synset < 0 || synset >= numOfV || hypernym < 0 || hypernym >= numOfV) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (synset == hypernym) {
+            throw new IllegalArgumentException("synset " + synset
+                                                   + " cannot be its own hypernym");
+        }
+        if (numOfEdges == from.length) {
+            from = Arrays.copyOf(from, 2 * numOfEdges);
+            to = Arrays.copyOf(to, 2 * numOfEdges);
+        }
+        from[numOfEdges] = synset;
+        to[numOfEdges++] = hypernym;
+    }
+    
+    // number of synsets added
+    public int synsets() {
+        return numOfSynsets;
+    }
+    
+    // number of hypernym edges added
+    public int edges() {
+        return numOfEdges;
+    }
+    
+    // the contents this batch was started from
+    Object base() {
+        return base;
+    }
+    
+    // number of synsets of the WordNet this batch was started from
+    int baseV() {
+        return baseV;
+    }
+    
+    // words field of the i-th new synset
+    String synset(int i) {
+        return synsets[i];
+    }
+    
+    // sources and targets of the new edges, of which the first edges() are
+    // used
+    int[] from() {
+        return from;
+    }
+    
+    int[] to() {
+        return to;
+    }
+}